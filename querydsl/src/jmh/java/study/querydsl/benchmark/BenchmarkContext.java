@@ -0,0 +1,68 @@
+package study.querydsl.benchmark;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import study.querydsl.QuerydslApplication;
+import study.querydsl.service.BulkLoadService;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**벤치마크용 스프링 컨텍스트
+ * 외부 h2 서버 대신 메모리 h2를 띄우고 BulkLoadService로 회원 members명 x 게시물 postsPerMember개를 적재한다.
+ * SQL 로그는 측정에 영향을 주므로 끈다.
+ * */
+public final class BenchmarkContext {
+
+    private static final AtomicInteger DATABASE_SEQUENCE = new AtomicInteger();
+
+    private BenchmarkContext() {
+    }
+
+    public static ConfigurableApplicationContext start(int members, int postsPerMember, String... properties) {
+        return start("jdbc:h2:mem:bench" + DATABASE_SEQUENCE.incrementAndGet() + ";DB_CLOSE_DELAY=-1", members, postsPerMember, properties);
+    }
+
+    /**DB url 지정
+     * 메모리 h2는 데이터를 힙에 올리므로 힙을 제한하고 대량 데이터를 조회하는 벤치마크는 파일 h2를 사용한다.
+     * */
+    public static ConfigurableApplicationContext start(String url, int members, int postsPerMember, String... properties) {
+        List<String> args = new ArrayList<>(List.of(
+                "--spring.profiles.active=bench",
+                "--spring.datasource.url=" + url,
+                "--spring.jpa.properties.hibernate.format_sql=false",
+                "--spring.jpa.properties.hibernate.use_sql_comments=false",
+                "--spring.jpa.properties.hibernate.order_inserts=true",
+                "--spring.jpa.properties.hibernate.jdbc.batch_size=500",
+                "--decorator.datasource.p6spy.enable-logging=false",
+                "--logging.level.org.hibernate.SQL=warn",
+                "--logging.level.study.querydsl=warn"));
+        Arrays.stream(properties).map(property -> "--" + property).forEach(args::add);
+
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(QuerydslApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(args.toArray(String[]::new));
+        context.getBean(BulkLoadService.class).seed(members, postsPerMember, 1000);
+        return context;
+    }
+
+    /**설정 프로필 비교용 컨텍스트
+     * start와 달리 SQL 로그, 하이버네이트 설정을 덮어쓰지 않고 profile 설정을 그대로 사용한다.
+     * DB만 메모리 h2로 바꾸고, prod 프로필은 스키마를 만들지 않으므로(ddl-auto: validate) 스키마 생성만 덮어쓴다.
+     * */
+    public static ConfigurableApplicationContext startProfile(String profile, int members, int postsPerMember, String... properties) {
+        List<String> args = new ArrayList<>(List.of(
+                "--spring.profiles.active=" + profile,
+                "--spring.datasource.url=jdbc:h2:mem:bench" + DATABASE_SEQUENCE.incrementAndGet() + ";DB_CLOSE_DELAY=-1",
+                "--spring.jpa.hibernate.ddl-auto=create"));
+        Arrays.stream(properties).map(property -> "--" + property).forEach(args::add);
+
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(QuerydslApplication.class)
+                .run(args.toArray(String[]::new));
+        context.getBean(BulkLoadService.class).seed(members, postsPerMember, 1000);
+        return context;
+    }
+}
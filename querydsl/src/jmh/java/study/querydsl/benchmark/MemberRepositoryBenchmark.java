@@ -0,0 +1,100 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.core.types.Projections;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import study.querydsl.dto.MemberDto;
+import study.querydsl.dto.MemberPostDto;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.QMemberDto;
+import study.querydsl.entity.Post;
+import study.querydsl.repository.MemberRepository;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QPost.post;
+
+/**리포지토리 주요 쿼리 벤치마크
+ * 데이터 크기(members)별로 검색, 페이징, fetch join, DTO 조회 방식을 비교한다.
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MemberRepositoryBenchmark {
+
+    @Param({"1000", "10000"})
+    int members;
+
+    @Param({"10"})
+    int postsPerMember;
+
+    ConfigurableApplicationContext context;
+    MemberRepository memberRepository;
+    JPAQueryFactory queryFactory;
+
+    MemberSearchCondition condition = new MemberSearchCondition("member1", 5);
+    PageRequest firstPage = PageRequest.of(0, 20);
+    PageRequest deepPage = PageRequest.of(40, 20);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start(members, postsPerMember);
+        memberRepository = context.getBean(MemberRepository.class);
+        queryFactory = new JPAQueryFactory(context.getBean(EntityManager.class));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<MemberPostDto> searchByWhere() {
+        return memberRepository.searchByWhere(condition);
+    }
+
+    @Benchmark
+    public Page<MemberPostDto> searchPageSimple() {
+        return memberRepository.searchPageSimple(condition, deepPage);
+    }
+
+    @Benchmark
+    public Page<MemberPostDto> searchPageComplex() {
+        return memberRepository.searchPageComplex(condition, firstPage);
+    }
+
+    /**QueryDSLTest.test9 fetch join*/
+    @Benchmark
+    public List<Post> fetchJoin() {
+        return queryFactory.selectFrom(post).join(post.member, member).fetchJoin()
+                .where(member.name.startsWith("member1"))
+                .limit(1000)
+                .fetch();
+    }
+
+    @Benchmark
+    public List<MemberDto> projectionBean() {
+        return queryFactory.select(Projections.bean(MemberDto.class, member.name, member.age)).from(member).fetch();
+    }
+
+    @Benchmark
+    public List<MemberDto> projectionFields() {
+        return queryFactory.select(Projections.fields(MemberDto.class, member.name, member.age)).from(member).fetch();
+    }
+
+    @Benchmark
+    public List<MemberDto> projectionConstructor() {
+        return queryFactory.select(Projections.constructor(MemberDto.class, member.name, member.age)).from(member).fetch();
+    }
+
+    @Benchmark
+    public List<MemberDto> projectionQueryProjection() {
+        return queryFactory.select(new QMemberDto(member.name, member.age)).from(member).fetch();
+    }
+}
@@ -0,0 +1,46 @@
+package study.querydsl.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import study.querydsl.dto.MemberPostDto;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.repository.MemberRepository;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**이름 포함 검색 like '%이름%'과 trigram 색인 비교
+ * like는 회원 수에 비례해 전체를 읽고, ngram은 후보 id만 PK로 조회한다.
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class NameSearchBenchmark {
+
+    @Param({"like", "ngram"})
+    String nameSearch;
+
+    @Param({"100000"})
+    int members;
+
+    ConfigurableApplicationContext context;
+    MemberRepository memberRepository;
+
+    MemberSearchCondition condition = new MemberSearchCondition("member4242", null);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start(members, 1, "querydsl.name-search=" + nameSearch);
+        memberRepository = context.getBean(MemberRepository.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<MemberPostDto> searchByName() {
+        return memberRepository.searchByWhere(condition);
+    }
+}
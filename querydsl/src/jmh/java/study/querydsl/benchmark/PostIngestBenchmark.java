@@ -0,0 +1,146 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Post;
+import study.querydsl.service.PostIngestListener;
+import study.querydsl.service.PostIngestService;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QPost.post;
+
+/**한 회원에게 게시물 100000개 작성
+ * bidirectional: new Post(title, member)로 member.getPosts()까지 채우고 한 번에 flush
+ * ownerOnly: PostIngestService(getReference + Post.ofOwner, batch_size 마다 flush/clear)
+ * 두 방식 모두 flush 직전 영속성 컨텍스트의 엔티티 수(최대), flush 시간(합), member.posts 초기화 여부를 같은 방법으로 센다.
+ * AuxCounters는 측정 시간 모드에서만 나오므로 AverageTime으로 측정하고,
+ * 회원의 게시물이 쌓이면 다음 측정의 member.posts 초기화 비용이 커지므로 측정마다 게시물 없는 새 회원에게 작성한다.
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class PostIngestBenchmark {
+
+    @Param({"100000"})
+    int posts;
+
+    ConfigurableApplicationContext context;
+    EntityManager em;
+    JPAQueryFactory queryFactory;
+    TransactionTemplate transactionTemplate;
+    PostIngestService postIngestService;
+    List<String> titles;
+    Long memberId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start(0, 0);
+        em = context.getBean(EntityManager.class);
+        queryFactory = new JPAQueryFactory(em);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        postIngestService = context.getBean(PostIngestService.class);
+        titles = IntStream.range(0, posts).mapToObj(i -> "post" + i).collect(Collectors.toList());
+    }
+
+    /**이전 측정에서 작성한 게시물과 회원을 지워 테이블 크기를 같게 맞춘다.*/
+    @Setup(Level.Iteration)
+    public void reset() {
+        transactionTemplate.executeWithoutResult(status -> {
+            queryFactory.delete(post).execute();
+            queryFactory.delete(member).execute();
+        });
+    }
+
+    @Setup(Level.Invocation)
+    public void newMember() {
+        memberId = transactionTemplate.execute(status -> {
+            Member owner = new Member("owner", 30);
+            em.persist(owner);
+            return owner.getId();
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    /**측정 구간의 합계, 연산당 값은 invocations로 나눈다.
+     * managedEntities: 연산마다 flush 직전 영속성 컨텍스트 엔티티 수의 최대값
+     * flushMicros: flush 시간(μs)
+     * postsInitialized: member.posts가 초기화된 연산 수
+     * */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class IngestCounters implements PostIngestListener {
+        public long invocations;
+        public long managedEntities;
+        public long flushMicros;
+        public long postsInitialized;
+
+        private int maxManaged;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            invocations = 0;
+            managedEntities = 0;
+            flushMicros = 0;
+            postsInitialized = 0;
+        }
+
+        void start() {
+            invocations++;
+            maxManaged = 0;
+        }
+
+        @Override
+        public void onFlush(int managedEntities, long flushNanos) {
+            maxManaged = Math.max(maxManaged, managedEntities);
+            flushMicros += flushNanos / 1_000;
+        }
+
+        @Override
+        public void onFinished(boolean postsInitialized) {
+            managedEntities += maxManaged;
+            if (postsInitialized) {
+                this.postsInitialized++;
+            }
+        }
+    }
+
+    @Benchmark
+    public long bidirectional(IngestCounters counters) {
+        counters.start();
+        return transactionTemplate.execute(status -> {
+            Member owner = em.find(Member.class, memberId);
+            for (String title : titles) {
+                em.persist(new Post(title, owner));
+            }
+            int managed = em.unwrap(SessionImplementor.class).getPersistenceContext().getNumberOfManagedEntities();
+            long start = System.nanoTime();
+            em.flush();
+            counters.onFlush(managed, System.nanoTime() - start);
+            counters.onFinished(PostIngestListener.isPostsInitialized(owner));
+            return (long) titles.size();
+        });
+    }
+
+    @Benchmark
+    public long ownerOnly(IngestCounters counters) {
+        counters.start();
+        return postIngestService.ingest(memberId, titles, counters);
+    }
+}
@@ -0,0 +1,62 @@
+package study.querydsl.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**local 프로필(기본 설정, SQL 로그) vs prod 프로필(application-prod.yml) 부하 테스트
+ * 동시 요청 32개로 페이징 검색과 게시물 수 검색 API를 호출해 처리량과 지연시간 분포를 비교한다.
+ * ./gradlew jmh -Pjmh.includes=ProfileLoadBenchmark
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(32)
+public class ProfileLoadBenchmark {
+
+    @Param({"local", "prod"})
+    String profile;
+
+    @Param({"10000"})
+    int members;
+
+    ConfigurableApplicationContext context;
+    HttpClient httpClient;
+    String baseUrl;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.startProfile(profile, members, 5, "server.port=0");
+        baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+        httpClient = HttpClient.newHttpClient();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int searchPage() throws IOException, InterruptedException {
+        int page = ThreadLocalRandom.current().nextInt(50);
+        return send("/members/postCount/complex?count=1&page=" + page + "&size=20");
+    }
+
+    @Benchmark
+    public int searchByName() throws IOException, InterruptedException {
+        int id = ThreadLocalRandom.current().nextInt(members);
+        return send("/members/postCount?name=member" + id + "&count=1");
+    }
+
+    private int send(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path)).GET().build();
+        return httpClient.send(request, HttpResponse.BodyHandlers.ofString()).statusCode();
+    }
+}
@@ -0,0 +1,48 @@
+package study.querydsl.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import study.querydsl.dto.MemberPostDto;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.repository.MemberRepository;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**QueryDSL로 매번 쿼리를 만드는 searchByWhere와 미리 만든 JPQL을 사용하는 searchByTemplate 비교
+ * 데이터를 작게 두고 쿼리 생성 비용이 드러나도록 한다. gc profiler의 gc.alloc.rate.norm이 요청당 할당량이다.
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class QueryTemplateBenchmark {
+
+    @Param({"100"})
+    int members;
+
+    ConfigurableApplicationContext context;
+    MemberRepository memberRepository;
+
+    MemberSearchCondition condition = new MemberSearchCondition("member1", 3);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start(members, 5);
+        memberRepository = context.getBean(MemberRepository.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<MemberPostDto> queryDsl() {
+        return memberRepository.searchByWhere(condition);
+    }
+
+    @Benchmark
+    public List<MemberPostDto> template() {
+        return memberRepository.searchByTemplate(condition);
+    }
+}
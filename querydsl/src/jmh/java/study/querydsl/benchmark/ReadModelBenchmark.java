@@ -0,0 +1,62 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberDto;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.repository.MemberReadRepository;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static study.querydsl.entity.QMember.member;
+
+/**엔티티 조회 후 DTO 변환 vs DTO 바로 조회
+ * 한 번에 회원 10000명을 조회하므로 gc profiler의 gc.alloc.rate.norm이 10000 row당 힙 할당량이다.
+ * entity는 쓰기 트랜잭션에서 엔티티 생성, 영속성 컨텍스트 등록, 스냅샷 복사, 커밋시 변경 감지까지 포함한다.
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ReadModelBenchmark {
+
+    @Param({"10000"})
+    int members;
+
+    ConfigurableApplicationContext context;
+    MemberReadRepository memberReadRepository;
+    TransactionTemplate transactionTemplate;
+    JPAQueryFactory queryFactory;
+
+    MemberSearchCondition condition = new MemberSearchCondition(null, null);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start(members, 1);
+        memberReadRepository = context.getBean(MemberReadRepository.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        queryFactory = new JPAQueryFactory(context.getBean(EntityManager.class));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<MemberDto> entity() {
+        return transactionTemplate.execute(status -> queryFactory.selectFrom(member).fetch().stream()
+                .map(m -> new MemberDto(m.getName(), m.getAge()))
+                .collect(Collectors.toList()));
+    }
+
+    @Benchmark
+    public List<MemberDto> projection() {
+        return memberReadRepository.findMembers(condition);
+    }
+}
@@ -0,0 +1,90 @@
+package study.querydsl.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+
+/**블로킹(ApiController) vs 논블로킹(ReactiveApiController) 검색 부하 테스트
+ * 동시 요청 64개로 HTTP 요청을 보내 지연시간 분포(p99 포함)를 SampleTime으로 측정하고
+ * 요청마다 서버 JVM의 스레드 수를 ThreadCounters(AuxCounters)로 센다.
+ * AuxCounters는 SampleTime 결과에는 나오지 않으므로 AverageTime으로도 측정해 그 결과에서 스레드 수를 읽는다.
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.SampleTime, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(64)
+public class SearchLoadBenchmark {
+
+    @Param({"blocking", "reactive"})
+    String api;
+
+    @Param({"10000"})
+    int members;
+
+    ConfigurableApplicationContext context;
+    HttpClient httpClient;
+    HttpRequest request;
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start(members, 5,
+                "spring.main.web-application-type=servlet",
+                "server.port=0");
+        String port = context.getEnvironment().getProperty("local.server.port");
+        String path = api.equals("reactive") ? "/reactive/members/postCount/complex" : "/members/postCount/complex";
+        httpClient = HttpClient.newHttpClient();
+        request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path + "?name=member1&count=1&page=3&size=20"))
+                .GET().build();
+    }
+
+    @Setup(Level.Iteration)
+    public void resetPeakThreads() {
+        threads.resetPeakThreadCount();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    /**측정 구간의 합계, 요청당 값은 requests로 나눈다.
+     * liveThreads: 요청을 마칠 때의 서버 JVM 스레드 수
+     * peakThreads: 요청을 마칠 때까지의 측정 구간 최대 스레드 수, 측정 구간 시작시 초기화한다.
+     * */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class ThreadCounters {
+        public long requests;
+        public long liveThreads;
+        public long peakThreads;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            requests = 0;
+            liveThreads = 0;
+            peakThreads = 0;
+        }
+
+        void record(ThreadMXBean threads) {
+            requests++;
+            liveThreads += threads.getThreadCount();
+            peakThreads += threads.getPeakThreadCount();
+        }
+    }
+
+    @Benchmark
+    public int search(ThreadCounters counters) throws IOException, InterruptedException {
+        int status = httpClient.send(request, HttpResponse.BodyHandlers.ofString()).statusCode();
+        counters.record(threads);
+        return status;
+    }
+}
@@ -0,0 +1,129 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import study.querydsl.dto.MemberPostDto;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.MemberRepository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static study.querydsl.entity.QMember.member;
+
+/**2차 캐시, 쿼리 캐시 벤치마크
+ * 일부 회원에 조회가 몰리는(Zipf 분포) 읽기 부하에서 캐시 사용 여부별로 처리량과
+ * 연산당 DB 왕복 수(statements), 2차 캐시/쿼리 캐시 hit ratio를 비교한다.
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SecondLevelCacheBenchmark {
+
+    @Param({"true", "false"})
+    boolean secondLevelCache;
+
+    @Param({"10000"})
+    int members;
+
+    /**Zipf 지수, 클수록 일부 회원에 조회가 몰린다.*/
+    @Param({"1.0"})
+    double skew;
+
+    ConfigurableApplicationContext context;
+    MemberRepository memberRepository;
+    Statistics statistics;
+    List<Long> memberIds;
+    double[] cumulative;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start(members, 5,
+                "spring.jpa.properties.hibernate.cache.use_second_level_cache=" + secondLevelCache,
+                "spring.jpa.properties.hibernate.cache.use_query_cache=" + secondLevelCache,
+                "spring.jpa.properties.hibernate.generate_statistics=true",
+                "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=warn");
+        memberRepository = context.getBean(MemberRepository.class);
+        statistics = context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+        memberIds = new JPAQueryFactory(context.getBean(EntityManager.class))
+                .select(member.id).from(member).orderBy(member.id.asc()).fetch();
+
+        cumulative = new double[memberIds.size()];
+        double sum = 0;
+        for (int rank = 0; rank < cumulative.length; rank++) {
+            sum += 1 / Math.pow(rank + 1, skew);
+            cumulative[rank] = sum;
+        }
+        for (int rank = 0; rank < cumulative.length; rank++) {
+            cumulative[rank] /= sum;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    /**연산당 DB 왕복 수와 캐시 hit/miss, hit ratio = cacheHits / (cacheHits + cacheMisses)*/
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class CacheCounters {
+        public long statements;
+        public long cacheHits;
+        public long cacheMisses;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            statements = 0;
+            cacheHits = 0;
+            cacheMisses = 0;
+        }
+    }
+
+    @Benchmark
+    public Optional<Member> findById(CacheCounters counters) {
+        long statementsBefore = statistics.getPrepareStatementCount();
+        long hitsBefore = statistics.getSecondLevelCacheHitCount();
+        long missesBefore = statistics.getSecondLevelCacheMissCount();
+
+        Optional<Member> found = memberRepository.findById(nextMemberId());
+
+        counters.statements += statistics.getPrepareStatementCount() - statementsBefore;
+        counters.cacheHits += statistics.getSecondLevelCacheHitCount() - hitsBefore;
+        counters.cacheMisses += statistics.getSecondLevelCacheMissCount() - missesBefore;
+        return found;
+    }
+
+    @Benchmark
+    public List<MemberPostDto> searchByWhereCached(CacheCounters counters) {
+        long statementsBefore = statistics.getPrepareStatementCount();
+        long hitsBefore = statistics.getQueryCacheHitCount();
+        long missesBefore = statistics.getQueryCacheMissCount();
+
+        List<MemberPostDto> result = memberRepository.searchByWhereCached(
+                new MemberSearchCondition("member" + nextRank(), null));
+
+        counters.statements += statistics.getPrepareStatementCount() - statementsBefore;
+        counters.cacheHits += statistics.getQueryCacheHitCount() - hitsBefore;
+        counters.cacheMisses += statistics.getQueryCacheMissCount() - missesBefore;
+        return result;
+    }
+
+    private Long nextMemberId() {
+        return memberIds.get(nextRank());
+    }
+
+    private int nextRank() {
+        int rank = Arrays.binarySearch(cumulative, ThreadLocalRandom.current().nextDouble());
+        return Math.min(rank >= 0 ? rank : -rank - 1, cumulative.length - 1);
+    }
+}
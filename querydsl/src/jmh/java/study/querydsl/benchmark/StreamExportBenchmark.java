@@ -0,0 +1,101 @@
+package study.querydsl.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.repository.MemberJpaRepository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**회원 1000000명 NDJSON 내보내기를 작은 힙(-Xmx128m)에서 실행
+ * /members/postCount/export와 같이 streamByWhere로 한 건씩 JSON으로 바꿔 버린다.
+ * 결과 크기와 상관없이 메모리 사용량이 일정해야 하므로 OutOfMemoryError 없이 끝나야 하고 peakHeapMb가 힙 제한보다 작아야 한다.
+ * 같은 조건을 searchByWhere(List)로 조회하면 이 힙에서는 OutOfMemoryError가 나므로 비교 대상으로 넣지 않았다.
+ * 메모리 h2는 데이터를 힙에 올리므로 임시 디렉터리의 파일 h2에 적재한다.
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx128m"})
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class StreamExportBenchmark {
+
+    @Param({"1000000"})
+    int members;
+
+    Path directory;
+    ConfigurableApplicationContext context;
+    MemberJpaRepository memberJpaRepository;
+    ObjectMapper objectMapper;
+
+    MemberSearchCondition condition = new MemberSearchCondition(null, null);
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("stream-export");
+        context = BenchmarkContext.start("jdbc:h2:file:" + directory.resolve("bench").toAbsolutePath(), members, 0);
+        memberJpaRepository = context.getBean(MemberJpaRepository.class);
+        objectMapper = context.getBean(ObjectMapper.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        context.close();
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    /**내보낸 row 수와 측정 중 힙 최대 사용량(MB)*/
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class HeapCounters {
+        public long rows;
+        public long peakHeapMb;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            rows = 0;
+            peakHeapMb = 0;
+            heapPools().forEach(MemoryPoolMXBean::resetPeakUsage);
+        }
+
+        void record(long streamed) {
+            rows += streamed;
+            long peak = heapPools().stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+            peakHeapMb = Math.max(peakHeapMb, peak / (1024 * 1024));
+        }
+
+        private static List<MemoryPoolMXBean> heapPools() {
+            return ManagementFactory.getMemoryPoolMXBeans().stream()
+                    .filter(pool -> pool.getType() == MemoryType.HEAP)
+                    .collect(Collectors.toList());
+        }
+    }
+
+    @Benchmark
+    public long stream(HeapCounters counters) {
+        Writer writer = Writer.nullWriter();
+        long streamed = memberJpaRepository.streamByWhere(condition, memberPostDto -> {
+            try {
+                writer.write(objectMapper.writeValueAsString(memberPostDto));
+                writer.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        counters.record(streamed);
+        return streamed;
+    }
+}
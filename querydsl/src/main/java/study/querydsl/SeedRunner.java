@@ -0,0 +1,42 @@
+package study.querydsl;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import study.querydsl.service.BulkLoadService;
+
+/**seed 프로필로 실행하면 회원 N명 x 게시물 M개를 적재하고 종료한다.
+ * ex) java -jar querydsl.jar --spring.profiles.active=seed --querydsl.seed.members=1000000 --querydsl.seed.posts-per-member=10
+ * 웹 서버가 없어도 스케줄러 스레드(@EnableScheduling)가 남아 JVM이 끝나지 않으므로 적재 후 컨텍스트를 닫고 종료 코드로 직접 종료한다.
+ * */
+@Profile("seed")
+@Component
+public class SeedRunner implements ApplicationRunner {
+
+    private final ApplicationContext context;
+    private final BulkLoadService bulkLoadService;
+    private final int members;
+    private final int postsPerMember;
+    private final int chunkSize;
+
+    public SeedRunner(ApplicationContext context, BulkLoadService bulkLoadService,
+                      @Value("${querydsl.seed.members}") int members,
+                      @Value("${querydsl.seed.posts-per-member}") int postsPerMember,
+                      @Value("${querydsl.seed.chunk-size}") int chunkSize) {
+        this.context = context;
+        this.bulkLoadService = bulkLoadService;
+        this.members = members;
+        this.postsPerMember = postsPerMember;
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        bulkLoadService.seed(members, postsPerMember, chunkSize);
+        System.exit(SpringApplication.exit(context));
+    }
+}
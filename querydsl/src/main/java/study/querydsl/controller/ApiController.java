@@ -1,27 +1,69 @@
 package study.querydsl.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import study.querydsl.dto.CountCacheStats;
+import study.querydsl.dto.MemberAgeStats;
 import study.querydsl.dto.MemberPostDto;
 import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.PostTitleDto;
+import study.querydsl.repository.CountMode;
+import study.querydsl.repository.MemberCountCache;
 import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.MemberReadRepository;
 import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.PostCountStrategy;
+import study.querydsl.repository.PostRepository;
+import study.querydsl.service.leaderboard.MemberLeaderboard;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
 import java.util.List;
 
 @RestController
 @RequiredArgsConstructor
 public class ApiController {
 
+    private final ObjectMapper objectMapper;
     private final MemberJpaRepository memberJpaRepository;
     private final MemberRepository memberRepository;
+    private final MemberCountCache memberCountCache;
+    private final PostRepository postRepository;
+    private final MemberLeaderboard memberLeaderboard;
+    private final MemberReadRepository memberReadRepository;
 
     @GetMapping("/members/postCount")
-    public List<MemberPostDto> searchMember1(MemberSearchCondition condition) {
-        return memberJpaRepository.searchByWhere(condition);
+    public List<MemberPostDto> searchMember1(MemberSearchCondition condition,
+                                             @RequestParam(defaultValue = "SUBQUERY") PostCountStrategy strategy) {
+        return memberJpaRepository.searchByWhere(condition, strategy);
+    }
+
+    /**검색 결과를 한 줄에 하나씩 JSON(NDJSON)으로 바로 응답에 쓴다.*/
+    @GetMapping(value = "/members/postCount/export", produces = "application/x-ndjson")
+    public void exportMember(MemberSearchCondition condition, HttpServletResponse response) throws IOException {
+        response.setContentType("application/x-ndjson");
+        response.setCharacterEncoding("UTF-8");
+        PrintWriter writer = response.getWriter();
+        memberJpaRepository.streamByWhere(condition, memberPostDto -> {
+            try {
+                writer.write(objectMapper.writeValueAsString(memberPostDto));
+                writer.write('\n');
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        writer.flush();
     }
 
     @GetMapping("/members/postCount/simple")
@@ -30,8 +72,58 @@ public class ApiController {
     }
 
     @GetMapping("/members/postCount/complex")
-    public Page<MemberPostDto> searchMember3(MemberSearchCondition condition, Pageable pageable) {
-        return memberRepository.searchPageComplex(condition, pageable);
+    public Page<MemberPostDto> searchMember3(MemberSearchCondition condition, Pageable pageable,
+                                             @RequestParam(defaultValue = "EXACT") CountMode countMode) {
+        return memberRepository.searchPageComplex(condition, pageable, countMode);
+    }
+
+    @GetMapping("/members/postCount/parallel")
+    public Page<MemberPostDto> searchMember5(MemberSearchCondition condition, Pageable pageable) {
+        return memberRepository.searchPageParallel(condition, pageable);
+    }
+
+    @GetMapping("/members/postCount/cursor")
+    public Slice<MemberPostDto> searchMember4(MemberSearchCondition condition,
+                                             @RequestParam(required = false) Long lastMemberId,
+                                             @RequestParam(defaultValue = "20") int size) {
+        requirePositiveSize(size);
+        return memberRepository.searchSliceByCursor(condition, lastMemberId, size);
+    }
+
+    @GetMapping("/members/{memberId}/posts")
+    public Slice<PostTitleDto> postsOfMember(@PathVariable Long memberId,
+                                             @RequestParam(required = false) Long lastPostId,
+                                             @RequestParam(defaultValue = "20") int size) {
+        requirePositiveSize(size);
+        return postRepository.findPostsOfMember(memberId, lastPostId, size);
+    }
+
+    /**커서 페이징은 size + 1 개를 조회하고 size로 PageRequest를 만들므로 0 이하이면 500 대신 400을 반환한다.*/
+    private static void requirePositiveSize(int size) {
+        if (size <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "size must be positive");
+        }
+    }
+
+    /**시작시 집계가 끝나기 전에는 빈 순위 대신 503을 반환한다.*/
+    @GetMapping("/members/leaderboard")
+    public List<MemberPostDto> leaderboard(@RequestParam(defaultValue = "10") int size,
+                                           @RequestParam(required = false) Integer minAge,
+                                           @RequestParam(required = false) Integer maxAge) {
+        if (!memberLeaderboard.isReady()) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "leaderboard is loading");
+        }
+        return memberLeaderboard.top(size, minAge, maxAge);
+    }
+
+    @GetMapping("/members/age-stats")
+    public MemberAgeStats ageStats() {
+        return memberReadRepository.ageStats();
+    }
+
+    @GetMapping("/members/postCount/complex/cache")
+    public CountCacheStats countCacheStats() {
+        return memberCountCache.stats();
     }
 
 
@@ -0,0 +1,33 @@
+package study.querydsl.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import study.querydsl.dto.MemberPostDto;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.service.ReactiveMemberSearchService;
+
+/**ApiController 검색의 논블로킹 버전
+ * Mono, Flux를 반환하면 스프링 MVC가 비동기로 처리하므로 검색하는 동안 서블릿 스레드를 점유하지 않는다.
+ * */
+@RestController
+@RequiredArgsConstructor
+public class ReactiveApiController {
+
+    private final ReactiveMemberSearchService reactiveMemberSearchService;
+
+    @GetMapping("/reactive/members/postCount/complex")
+    public Mono<Page<MemberPostDto>> searchMember(MemberSearchCondition condition, Pageable pageable) {
+        return reactiveMemberSearchService.searchPage(condition, pageable);
+    }
+
+    @GetMapping(value = "/reactive/members/postCount", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<MemberPostDto> searchMembers(MemberSearchCondition condition) {
+        return reactiveMemberSearchService.search(condition);
+    }
+}
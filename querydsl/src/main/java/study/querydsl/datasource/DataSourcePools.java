@@ -0,0 +1,32 @@
+package study.querydsl.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+/**primary, replica 커넥션 풀
+ * 풀을 DataSource 빈으로 등록하면 p6spy가 라우팅 DataSource와 풀을 모두 감싸서 SQL이 두 번 기록되므로
+ * 라우팅 DataSource만 빈으로 등록하고 풀은 이 객체가 닫는다.
+ * */
+public class DataSourcePools implements AutoCloseable {
+
+    private final HikariDataSource primary;
+    private final HikariDataSource replica;
+
+    public DataSourcePools(HikariDataSource primary, HikariDataSource replica) {
+        this.primary = primary;
+        this.replica = replica;
+    }
+
+    public HikariDataSource getPrimary() {
+        return primary;
+    }
+
+    public HikariDataSource getReplica() {
+        return replica;
+    }
+
+    @Override
+    public void close() {
+        replica.close();
+        primary.close();
+    }
+}
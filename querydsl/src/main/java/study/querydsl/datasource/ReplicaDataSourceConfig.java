@@ -0,0 +1,63 @@
+package study.querydsl.datasource;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+/**primary/replica 라우팅 DataSource
+ * querydsl.datasource.replica.enabled=true 이면 스프링 부트가 만드는 DataSource 대신 사용한다.
+ * 커넥션 풀 지표는 hikaricp.connections.* (pool=primary|replica), 라우팅 지표는 querydsl.datasource.route 로 확인한다.
+ * */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "querydsl.datasource.replica.enabled", havingValue = "true")
+@EnableConfigurationProperties(ReplicaProperties.class)
+public class ReplicaDataSourceConfig {
+
+    @Bean(destroyMethod = "close")
+    public DataSourcePools dataSourcePools(DataSourceProperties primaryProperties, ReplicaProperties replicaProperties,
+                                           MeterRegistry meterRegistry) {
+        HikariConfig primary = new HikariConfig();
+        primary.setPoolName("primary");
+        primary.setJdbcUrl(primaryProperties.determineUrl());
+        primary.setUsername(primaryProperties.determineUsername());
+        primary.setPassword(primaryProperties.determinePassword());
+        primary.setDriverClassName(primaryProperties.determineDriverClassName());
+        primary.setMaximumPoolSize(replicaProperties.getPrimaryPoolSize());
+        primary.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+
+        HikariConfig replica = new HikariConfig();
+        replica.setPoolName("replica");
+        replica.setJdbcUrl(replicaProperties.getUrl());
+        replica.setUsername(replicaProperties.getUsername());
+        replica.setPassword(replicaProperties.getPassword());
+        replica.setDriverClassName(replicaProperties.getDriverClassName() != null
+                ? replicaProperties.getDriverClassName() : primaryProperties.determineDriverClassName());
+        replica.setMaximumPoolSize(replicaProperties.getReplicaPoolSize());
+        replica.setReadOnly(true);
+        replica.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+
+        return new DataSourcePools(new HikariDataSource(primary), new HikariDataSource(replica));
+    }
+
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor(DataSourcePools pools, ReplicaProperties replicaProperties,
+                                               MeterRegistry meterRegistry) {
+        return new ReplicaLagMonitor(pools, replicaProperties, meterRegistry);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(DataSourcePools pools, ReplicaLagMonitor lagMonitor, MeterRegistry meterRegistry) {
+        return new LazyConnectionDataSourceProxy(new ReplicationRoutingDataSource(pools, lagMonitor, meterRegistry));
+    }
+}
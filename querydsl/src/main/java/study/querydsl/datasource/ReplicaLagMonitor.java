@@ -0,0 +1,68 @@
+package study.querydsl.datasource;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.util.StringUtils;
+
+import java.time.Duration;
+
+/**replica 복제 지연 확인
+ * querydsl.datasource.replica.lag-query를 주기적으로 replica에서 실행한다.
+ * 쿼리가 실패하면 replica를 사용할 수 없는 것으로 보고 지연 중으로 표시한다.
+ * */
+@Slf4j
+public class ReplicaLagMonitor {
+
+    private final JdbcTemplate replicaJdbcTemplate;
+    private final String lagQuery;
+    private final Duration maxLag;
+    private volatile Duration lag = Duration.ZERO;
+    private volatile boolean available = true;
+
+    public ReplicaLagMonitor(DataSourcePools pools, ReplicaProperties properties, MeterRegistry meterRegistry) {
+        this.replicaJdbcTemplate = new JdbcTemplate(pools.getReplica());
+        this.lagQuery = properties.getLagQuery();
+        this.maxLag = properties.getMaxLag();
+        Gauge.builder("querydsl.datasource.replica.lag", this, monitor -> monitor.lag.toMillis())
+                .description("replica 복제 지연(ms)")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${querydsl.datasource.replica.lag-check-interval:5000}")
+    public void check() {
+        if (!StringUtils.hasText(lagQuery)) {
+            return;
+        }
+        try {
+            Long seconds = replicaJdbcTemplate.queryForObject(lagQuery, Long.class);
+            record(Duration.ofSeconds(seconds != null ? seconds : 0));
+        } catch (RuntimeException e) {
+            if (available) {
+                log.warn("replica lag check failed, routing reads to primary", e);
+            }
+            available = false;
+        }
+    }
+
+    /**확인한 복제 지연을 반영한다.*/
+    public void record(Duration lag) {
+        boolean wasLagging = isLagging();
+        this.lag = lag;
+        this.available = true;
+        if (isLagging() != wasLagging) {
+            log.warn("replica lag = {}ms, max = {}ms, reads routed to {}", lag.toMillis(), maxLag.toMillis(),
+                    isLagging() ? DataSourceRoute.PRIMARY : DataSourceRoute.REPLICA);
+        }
+    }
+
+    public boolean isLagging() {
+        return !available || lag.compareTo(maxLag) > 0;
+    }
+
+    public Duration getLag() {
+        return lag;
+    }
+}
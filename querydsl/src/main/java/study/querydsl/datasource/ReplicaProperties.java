@@ -0,0 +1,31 @@
+package study.querydsl.datasource;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**읽기 전용 복제본(replica) 설정
+ * querydsl.datasource.replica.enabled=true 일 때만 사용한다. primary는 spring.datasource 설정을 그대로 사용한다.
+ * */
+@Getter @Setter
+@ConfigurationProperties(prefix = "querydsl.datasource.replica")
+public class ReplicaProperties {
+
+    private boolean enabled;
+    private String url;
+    private String username;
+    private String password;
+    private String driverClassName;
+
+    private int primaryPoolSize = 10;
+    private int replicaPoolSize = 10;
+
+    /**복제 지연을 초 단위로 반환하는 쿼리, 비어있으면 지연을 확인하지 않는다.
+     * 예) MySQL: select timestampdiff(second, max(ts), now()) from heartbeat
+     * */
+    private String lagQuery;
+    /**복제 지연이 이 값을 넘으면 읽기 전용 트랜잭션도 primary로 보낸다.*/
+    private Duration maxLag = Duration.ofSeconds(5);
+}
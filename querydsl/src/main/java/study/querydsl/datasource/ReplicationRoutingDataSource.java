@@ -0,0 +1,52 @@
+package study.querydsl.datasource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**읽기 전용 트랜잭션은 replica, 나머지는 primary로 보낸다.
+ * 트랜잭션 시작 시점에는 아직 readOnly 여부가 설정되지 않으므로 반드시 LazyConnectionDataSourceProxy로 감싸서
+ * 첫 SQL을 실행할 때 커넥션을 가져오도록 한다.
+ * replica 지연이 maxLag를 넘으면 읽기 전용 트랜잭션도 primary로 보낸다.
+ * */
+public class ReplicationRoutingDataSource extends AbstractRoutingDataSource {
+
+    private final ReplicaLagMonitor lagMonitor;
+    private final Map<DataSourceRoute, Counter> routeCounters = new EnumMap<>(DataSourceRoute.class);
+    private final Counter lagFallbackCounter;
+
+    public ReplicationRoutingDataSource(DataSourcePools pools, ReplicaLagMonitor lagMonitor, MeterRegistry meterRegistry) {
+        this.lagMonitor = lagMonitor;
+        for (DataSourceRoute route : DataSourceRoute.values()) {
+            routeCounters.put(route, Counter.builder("querydsl.datasource.route")
+                    .description("라우팅된 커넥션 수")
+                    .tag("target", route.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+        this.lagFallbackCounter = Counter.builder("querydsl.datasource.replica.lag.fallback")
+                .description("replica 지연으로 primary로 보낸 읽기 전용 커넥션 수")
+                .register(meterRegistry);
+
+        setTargetDataSources(Map.of(DataSourceRoute.PRIMARY, pools.getPrimary(), DataSourceRoute.REPLICA, pools.getReplica()));
+        setDefaultTargetDataSource(pools.getPrimary());
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        DataSourceRoute route = DataSourceRoute.PRIMARY;
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (lagMonitor.isLagging()) {
+                lagFallbackCounter.increment();
+            } else {
+                route = DataSourceRoute.REPLICA;
+            }
+        }
+        routeCounters.get(route).increment();
+        return route;
+    }
+}
@@ -0,0 +1,22 @@
+package study.querydsl.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+@Getter
+@ToString
+@AllArgsConstructor
+public class CountCacheStats {
+
+    private long hitCount;
+    private long missCount;
+    private long invalidationCount;
+    private int size;
+    private int maxSize;
+
+    public double getHitRatio() {
+        long requestCount = hitCount + missCount;
+        return requestCount == 0 ? 0 : (double) hitCount / requestCount;
+    }
+}
@@ -0,0 +1,28 @@
+package study.querydsl.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.SortedMap;
+
+/**회원 나이 통계
+ * buckets는 구간 시작 나이 → 회원 수, 예) bucketSize 10 이면 20 → 20~29세 회원 수
+ * */
+@Getter
+@ToString
+@EqualsAndHashCode
+@AllArgsConstructor
+public class MemberAgeStats {
+
+    private long count;
+    private long sum;
+    private Integer min;
+    private Integer max;
+    private SortedMap<Integer, Long> buckets;
+
+    public Double getAvg() {
+        return count == 0 ? null : (double) sum / count;
+    }
+}
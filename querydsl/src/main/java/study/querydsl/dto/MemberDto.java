@@ -1,5 +1,6 @@
 package study.querydsl.dto;
 
+import com.querydsl.core.annotations.QueryProjection;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
@@ -14,6 +15,7 @@ public class MemberDto {
     private String name;
     private int age;
 
+    @QueryProjection
     public MemberDto(String name, int age) {
         this.name = name;
         this.age = age;
@@ -0,0 +1,23 @@
+package study.querydsl.dto;
+
+import com.querydsl.core.annotations.QueryProjection;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+@Getter
+@Setter
+@ToString(of = {"postId", "title"})
+@NoArgsConstructor
+public class PostTitleDto {
+
+    private Long postId;
+    private String title;
+
+    @QueryProjection
+    public PostTitleDto(Long postId, String title) {
+        this.postId = postId;
+        this.title = title;
+    }
+}
@@ -1,23 +1,53 @@
 package study.querydsl.entity;
 
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import study.querydsl.repository.MemberCountCacheListener;
+import study.querydsl.repository.name.MemberNameSearchListener;
+import study.querydsl.service.agestats.MemberAgeStatsListener;
+import study.querydsl.service.leaderboard.MemberLeaderboardListener;
 
 import javax.persistence.*;
 import java.util.ArrayList;
 import java.util.List;
 
+/**검색 조건에 사용하는 컬럼 인덱스
+ * columnList는 논리 컬럼명(필드명)을 사용한다. post_count가 아니라 postCount
+ * */
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_member_name", columnList = "name"),
+        @Index(name = "idx_member_age", columnList = "age"),
+        @Index(name = "idx_member_post_count", columnList = "postCount")
+})
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@EntityListeners({MemberCountCacheListener.class, MemberNameSearchListener.class, MemberLeaderboardListener.class,
+        MemberAgeStatsListener.class})
 @Getter @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @ToString(of = {"id", "name", "age"})
 public class Member {
 
-    @Id @GeneratedValue
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "member_seq_generator")
+    @SequenceGenerator(name = "member_seq_generator", sequenceName = "member_seq", allocationSize = 50)
     @Column(name = "MEMBER_ID")
     private Long id;
     private String name;
     private int age;
 
+    /**게시물 수 반정규화
+     * 검색마다 post count 서브쿼리를 날리지 않도록 게시물 수를 컬럼으로 유지한다.
+     * 엔티티로 게시물을 작성, 작성자 변경, 삭제하면 Post에서 증감하며 동시 수정은 version으로 막는다.
+     * PostWriteService, PostIngestService는 update로 원자적으로 증감하고 version을 올린다.
+     * */
+    private int postCount;
+
+    @Version
+    private Long version;
+
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     @OneToMany(fetch = FetchType.LAZY, mappedBy = "member")
     private List<Post> posts = new ArrayList<>();
 
@@ -25,4 +55,12 @@ public class Member {
         this.name = name;
         this.age = age;
     }
+
+    public void increasePostCount() {
+        this.postCount++;
+    }
+
+    public void decreasePostCount() {
+        this.postCount--;
+    }
 }
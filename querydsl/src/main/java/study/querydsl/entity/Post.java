@@ -1,16 +1,28 @@
 package study.querydsl.entity;
 
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import study.querydsl.repository.MemberCountCacheListener;
 
 import javax.persistence.*;
 
+/**작성자별 게시물 조회, 게시물 수 서브쿼리와 join에 사용하는 FK 인덱스
+ * POST_ID를 뒤에 붙여 작성자의 게시물을 id 순서로 커서 조회할 때 정렬 없이 인덱스 범위에서 size + 1 개의 행만 찾는다.
+ * title은 인덱스에 없으므로 찾은 행마다 테이블에서 title을 읽는다. 읽는 행 수가 size + 1 개로 정해져 있어 title까지 넣은 커버링 인덱스로 만들지 않는다.
+ * */
 @Entity
+@Table(indexes = @Index(name = "idx_post_member_post", columnList = "MEMBER_ID, POST_ID"))
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@EntityListeners(MemberCountCacheListener.class)
 @Getter @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @ToString(of = {"id", "title"})
 public class Post {
 
-    @Id @GeneratedValue
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "post_seq_generator")
+    @SequenceGenerator(name = "post_seq_generator", sequenceName = "post_seq", allocationSize = 50)
     @Column(name = "POST_ID")
     private Long id;
 
@@ -25,8 +37,38 @@ public class Post {
         addMember(member);
     }
 
+    /**대량 작성용 생성
+     * 연관관계의 주인인 Post.member만 설정하고 member.getPosts()는 건드리지 않으므로 컬렉션이 초기화되지 않는다.
+     * member는 getReference 프록시를 넘기고 게시물 수는 호출하는 쪽에서 갱신한다. (PostIngestService)
+     * */
+    public static Post ofOwner(String title, Member member) {
+        Post post = new Post();
+        post.title = title;
+        post.member = member;
+        return post;
+    }
+
+    /**작성자 변경시 기존 작성자의 게시물 목록에서 빼고 게시물 수를 줄인 뒤 새 작성자의 게시물 수를 늘린다.
+     * 게시물 수 변경은 작성자의 version을 올리므로 같은 작성자에게 동시에 쓰면 OptimisticLockException이 난다.
+     * 동시에 쓰는 경로는 작성자 엔티티를 바꾸지 않고 게시물 수를 update로 증감하는 PostWriteService를 사용한다.
+     * */
     public void addMember(Member member) {
+        if (this.member == member) {
+            return;
+        }
+        if (this.member != null) {
+            this.member.getPosts().remove(this);
+            this.member.decreasePostCount();
+        }
         this.member = member;
         member.getPosts().add(this);
+        member.increasePostCount();
+    }
+
+    @PreRemove
+    private void removeMember() {
+        if (member != null) {
+            member.decreasePostCount();
+        }
     }
 }
@@ -0,0 +1,25 @@
+package study.querydsl.job;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import study.querydsl.repository.MemberRepository;
+
+/**반정규화된 Member.postCount 보정 작업
+ * 게시물 수는 엔티티 변경으로 유지되지만 bulk 연산이나 직접 실행한 SQL은 이를 거치지 않는다.
+ * 주기적으로 실제 게시물 수와 다른 회원만 찾아서 다시 계산한다.
+ * */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PostCountReconcileJob {
+
+    private final MemberRepository memberRepository;
+
+    @Scheduled(cron = "${querydsl.post-count.reconcile-cron:0 0 4 * * *}")
+    public void reconcile() {
+        long reconciled = memberRepository.reconcilePostCount();
+        log.info("post count reconciled members = {}", reconciled);
+    }
+}
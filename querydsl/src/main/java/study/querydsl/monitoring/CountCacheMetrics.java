@@ -0,0 +1,27 @@
+package study.querydsl.monitoring;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import study.querydsl.repository.MemberCountCache;
+
+/**Count 캐시 hit/miss 지표*/
+@Component
+@RequiredArgsConstructor
+public class CountCacheMetrics implements MeterBinder {
+
+    private final MemberCountCache memberCountCache;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("querydsl.count-cache.requests", memberCountCache, MemberCountCache::getHitCount)
+                .tag("result", "hit").register(registry);
+        FunctionCounter.builder("querydsl.count-cache.requests", memberCountCache, MemberCountCache::getMissCount)
+                .tag("result", "miss").register(registry);
+        Gauge.builder("querydsl.count-cache.size", memberCountCache, MemberCountCache::getSize)
+                .register(registry);
+    }
+}
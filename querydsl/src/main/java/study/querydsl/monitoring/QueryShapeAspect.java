@@ -0,0 +1,117 @@
+package study.querydsl.monitoring;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.hibernate.Session;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.repository.Repository;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.ClassUtils;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Arrays;
+
+/**리포지토리, 컨트롤러 메서드 실행 동안 나간 SQL을 해당 메서드에 연결
+ * 메서드 이름은 MemberRepositoryImpl.searchPageComplex 처럼 클래스명.메서드명 으로 기록한다.
+ * 스프링 데이터 JPA 리포지토리는 프록시이므로 MemberRepository.findById 처럼 인터페이스 이름을 사용한다.
+ * 리포지토리 프록시가 사용자 정의 구현(MemberRepositoryImpl)으로 위임한 호출은 프록시의 scope 하나로 기록한다.
+ * */
+@Aspect
+@Component
+public class QueryShapeAspect {
+
+    private final QueryShapeRecorder recorder;
+    private final ObjectProvider<EntityManagerFactory> entityManagerFactory;
+    //현재 스레드에서 실행중인 리포지토리 프록시 호출, 사용자 정의 구현으로 위임됐는지 확인한다.
+    private final ThreadLocal<RepositoryCall> repositoryCall = new ThreadLocal<>();
+
+    public QueryShapeAspect(QueryShapeRecorder recorder, ObjectProvider<EntityManagerFactory> entityManagerFactory) {
+        this.recorder = recorder;
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    @Around("@within(org.springframework.stereotype.Repository)" +
+            " || this(org.springframework.data.repository.Repository)" +
+            " || @within(org.springframework.web.bind.annotation.RestController)")
+    public Object record(ProceedingJoinPoint joinPoint) throws Throwable {
+        RepositoryCall call = repositoryCall.get();
+        if (call != null && call.isDelegatedTo(joinPoint)) {
+            return joinPoint.proceed();
+        }
+
+        QueryShapeScope scope = QueryShapeContext.open(methodName(joinPoint));
+        boolean repositoryProxy = joinPoint.getThis() instanceof Repository;
+        if (repositoryProxy) {
+            repositoryCall.set(new RepositoryCall(scope, joinPoint));
+        }
+        try {
+            return joinPoint.proceed();
+        } finally {
+            if (repositoryProxy) {
+                if (call != null) {
+                    repositoryCall.set(call);
+                } else {
+                    repositoryCall.remove();
+                }
+            }
+            QueryShapeContext.close(scope);
+            recorder.record(scope, persistenceContextEntities());
+        }
+    }
+
+    private String methodName(ProceedingJoinPoint joinPoint) {
+        String methodName = joinPoint.getSignature().getName();
+        Object proxy = joinPoint.getThis();
+        if (proxy instanceof Repository) {
+            for (Class<?> type : ClassUtils.getAllInterfacesAsSet(proxy)) {
+                if (type.getName().startsWith("study.querydsl.")) {
+                    return type.getSimpleName() + "." + methodName;
+                }
+            }
+        }
+        return AopUtils.getTargetClass(joinPoint.getTarget()).getSimpleName() + "." + methodName;
+    }
+
+    /**트랜잭션(또는 OSIV)으로 묶여있는 영속성 컨텍스트의 엔티티 수
+     * 묶여있는 EntityManager가 없으면 메서드가 끝나면서 이미 닫혔으므로 0이다.
+     * */
+    private int persistenceContextEntities() {
+        EntityManagerFactory emf = entityManagerFactory.getIfAvailable();
+        if (emf == null) {
+            return 0;
+        }
+        EntityManagerHolder holder = (EntityManagerHolder) TransactionSynchronizationManager.getResource(emf);
+        if (holder == null || !holder.getEntityManager().isOpen()) {
+            return 0;
+        }
+        return holder.getEntityManager().unwrap(Session.class).getStatistics().getEntityCount();
+    }
+
+    /**리포지토리 프록시 호출
+     * 프록시의 scope가 가장 안쪽이고 같은 이름, 같은 인자로 호출된 메서드는 프록시가 위임한 사용자 정의 구현이다.
+     * */
+    private static class RepositoryCall {
+
+        private final QueryShapeScope scope;
+        private final String methodName;
+        private final Object[] args;
+
+        RepositoryCall(QueryShapeScope scope, ProceedingJoinPoint joinPoint) {
+            this.scope = scope;
+            this.methodName = joinPoint.getSignature().getName();
+            this.args = joinPoint.getArgs();
+        }
+
+        boolean isDelegatedTo(ProceedingJoinPoint joinPoint) {
+            if (QueryShapeContext.current() != scope || !methodName.equals(joinPoint.getSignature().getName())) {
+                return false;
+            }
+            //기본형 인자는 위임하면서 다시 boxing 되므로 == 대신 equals로 비교한다.
+            return Arrays.equals(args, joinPoint.getArgs());
+        }
+    }
+}
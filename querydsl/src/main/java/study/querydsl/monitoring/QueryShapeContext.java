@@ -0,0 +1,53 @@
+package study.querydsl.monitoring;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+
+/**현재 스레드에서 열려있는 QueryShapeScope 관리
+ * JDBC 리스너는 실행중인 메서드를 알 수 없으므로 메서드 시작시 scope를 열고 끝날때 닫아서 SQL을 메서드에 연결한다.
+ * SQL은 가장 안쪽 scope 하나에만 기록하고, scope를 닫을 때 그 합계를 바깥 scope에 더한다.
+ * 따라서 바깥 scope의 합계는 안쪽 scope의 SQL까지 포함하고, 메서드별 지표는 자기 SQL만 한 번씩 센다.
+ * */
+public final class QueryShapeContext {
+
+    private static final ThreadLocal<Deque<QueryShapeScope>> SCOPES = ThreadLocal.withInitial(ArrayDeque::new);
+
+    private QueryShapeContext() {
+    }
+
+    public static QueryShapeScope open(String name) {
+        QueryShapeScope scope = new QueryShapeScope(name);
+        SCOPES.get().push(scope);
+        return scope;
+    }
+
+    public static void close(QueryShapeScope scope) {
+        scope.end();
+        Deque<QueryShapeScope> scopes = SCOPES.get();
+        QueryShapeScope parent = null;
+        for (Iterator<QueryShapeScope> it = scopes.iterator(); it.hasNext(); ) {
+            if (it.next() == scope) {
+                it.remove();
+                parent = it.hasNext() ? it.next() : null;
+                break;
+            }
+        }
+        if (parent != null) {
+            scope.rollUpTo(parent);
+        }
+        if (scopes.isEmpty()) {
+            SCOPES.remove();
+        }
+    }
+
+    /**가장 안쪽에 열려있는 scope, 없으면 null*/
+    static QueryShapeScope current() {
+        Deque<QueryShapeScope> scopes = SCOPES.get();
+        if (scopes.isEmpty()) {
+            SCOPES.remove();
+            return null;
+        }
+        return scopes.peek();
+    }
+}
@@ -0,0 +1,30 @@
+package study.querydsl.monitoring;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**GET /actuator/queryshape 메서드별 SQL 수, row 수, JDBC/hydration 시간, N+1 감지 횟수
+ * DELETE /actuator/queryshape 누적 통계 초기화
+ * */
+@Component
+@Endpoint(id = "queryshape")
+@RequiredArgsConstructor
+public class QueryShapeEndpoint {
+
+    private final QueryShapeRecorder recorder;
+
+    @ReadOperation
+    public Map<String, QueryShapeStats> queryShapes() {
+        return recorder.getStats();
+    }
+
+    @DeleteOperation
+    public void reset() {
+        recorder.reset();
+    }
+}
@@ -0,0 +1,31 @@
+package study.querydsl.monitoring;
+
+import com.p6spy.engine.common.ResultSetInformation;
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.SimpleJdbcEventListener;
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+
+/**p6spy JDBC 이벤트를 가장 안쪽에 열려있는 scope에 기록
+ * p6spy-spring-boot-starter는 JdbcEventListener 빈을 자동으로 등록한다.
+ * */
+@Component
+public class QueryShapeListener extends SimpleJdbcEventListener {
+
+    @Override
+    public void onAfterAnyExecute(StatementInformation statementInformation, long timeElapsedNanos, SQLException e) {
+        QueryShapeScope scope = QueryShapeContext.current();
+        if (scope != null) {
+            scope.recordStatement(statementInformation.getSql(), statementInformation.getSqlWithValues(), timeElapsedNanos);
+        }
+    }
+
+    @Override
+    public void onAfterResultSetNext(ResultSetInformation resultSetInformation, long timeElapsedNanos, boolean hasNext, SQLException e) {
+        QueryShapeScope scope = QueryShapeContext.current();
+        if (scope != null) {
+            scope.recordFetch(timeElapsedNanos, hasNext);
+        }
+    }
+}
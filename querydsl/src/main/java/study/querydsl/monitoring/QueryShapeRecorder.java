@@ -0,0 +1,80 @@
+package study.querydsl.monitoring;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**닫힌 scope를 메서드별 Micrometer 지표와 누적 통계로 기록
+ * SQL 수, row 수, JDBC 시간은 안쪽 리포지토리 메서드가 기록한 것을 빼고 메서드가 직접 실행한 것만 센다.
+ * 컨트롤러 -> 리포지토리로 중첩돼도 SQL 하나가 한 메서드에만 기록되므로 메서드별 값을 더하면 실제 SQL 수가 된다.
+ * 시간, 할당량, CPU는 메서드 실행 구간으로 재므로 안쪽 메서드를 포함한다.
+ * querydsl.query.statements  메서드 실행당 SQL 수
+ * querydsl.query.rows        메서드 실행당 조회한 row 수
+ * querydsl.query.jdbc        JDBC 실행 + ResultSet 읽기 시간
+ * querydsl.query.hydration   JDBC 밖에서 사용한 시간(엔티티/DTO 생성, 영속성 컨텍스트 처리)
+ * querydsl.query.persistence-context.entities  메서드 종료시 영속성 컨텍스트 엔티티 수
+ * querydsl.query.allocated   메서드 실행당 힙 할당량(byte)
+ * querydsl.query.cpu         메서드 실행당 CPU 시간
+ * querydsl.query.n-plus-one  같은 select가 threshold 번 이상 반복된 횟수
+ * */
+@Slf4j
+@Component
+public class QueryShapeRecorder {
+
+    private final MeterRegistry meterRegistry;
+    private final int nPlusOneThreshold;
+    private final Map<String, QueryShapeStats> stats = new ConcurrentHashMap<>();
+
+    public QueryShapeRecorder(MeterRegistry meterRegistry,
+                              @Value("${querydsl.query-shape.n-plus-one-threshold:5}") int nPlusOneThreshold) {
+        this.meterRegistry = meterRegistry;
+        this.nPlusOneThreshold = nPlusOneThreshold;
+    }
+
+    public void record(QueryShapeScope scope, int persistenceContextEntities) {
+        String method = scope.getName();
+        DistributionSummary.builder("querydsl.query.statements").tag("method", method)
+                .register(meterRegistry).record(scope.getSelfStatementCount());
+        DistributionSummary.builder("querydsl.query.rows").tag("method", method)
+                .register(meterRegistry).record(scope.getSelfRowCount());
+        Timer.builder("querydsl.query.jdbc").tag("method", method)
+                .register(meterRegistry).record(scope.getSelfJdbcNanos(), TimeUnit.NANOSECONDS);
+        Timer.builder("querydsl.query.hydration").tag("method", method)
+                .register(meterRegistry).record(scope.getHydrationNanos(), TimeUnit.NANOSECONDS);
+        DistributionSummary.builder("querydsl.query.persistence-context.entities").tag("method", method)
+                .register(meterRegistry).record(persistenceContextEntities);
+        DistributionSummary.builder("querydsl.query.allocated").tag("method", method).baseUnit("bytes")
+                .register(meterRegistry).record(scope.getAllocatedBytes());
+        Timer.builder("querydsl.query.cpu").tag("method", method)
+                .register(meterRegistry).record(scope.getCpuNanos(), TimeUnit.NANOSECONDS);
+
+        String nPlusOneSql = null;
+        Map<String, Integer> repeated = scope.getRepeatedSelects(nPlusOneThreshold);
+        if (!repeated.isEmpty()) {
+            meterRegistry.counter("querydsl.query.n-plus-one", "method", method).increment();
+            Map.Entry<String, Integer> worst = repeated.entrySet().stream()
+                    .max(Map.Entry.comparingByValue()).get();
+            nPlusOneSql = worst.getKey();
+            log.warn("N+1 suspected in {}: {} times [{}]", method, worst.getValue(), nPlusOneSql);
+        }
+
+        stats.computeIfAbsent(method, key -> new QueryShapeStats())
+                .add(scope, persistenceContextEntities, nPlusOneSql);
+    }
+
+    public Map<String, QueryShapeStats> getStats() {
+        return new TreeMap<>(stats);
+    }
+
+    public void reset() {
+        stats.clear();
+    }
+}
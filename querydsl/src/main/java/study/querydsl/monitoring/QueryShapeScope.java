@@ -0,0 +1,179 @@
+package study.querydsl.monitoring;
+
+import com.sun.management.ThreadMXBean;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**리포지토리/컨트롤러 메서드 한 번의 실행 동안 나간 SQL 기록
+ * SQL은 가장 안쪽 scope에 기록되고 안쪽 scope가 닫힐 때 합계가 바깥 scope에 더해지므로 바깥 scope는 안쪽 scope의 SQL까지 포함한다.
+ * getSelf* 는 안쪽 scope를 제외하고 이 scope가 직접 실행한 SQL만 센다.
+ * */
+public class QueryShapeScope {
+
+    private static final int MAX_RECORDED_STATEMENTS = 200;
+
+    private static final ThreadMXBean THREADS = threadMXBean();
+
+    private final String name;
+    private final long startNanos = System.nanoTime();
+    private final long startAllocatedBytes = allocatedBytes();
+    private final long startCpuNanos = cpuNanos();
+    private long endNanos;
+    private long allocatedBytes;
+    private long cpuNanos;
+
+    private int statementCount;
+    private long rowCount;
+    private long jdbcNanos;
+    private int selfStatementCount;
+    private long selfRowCount;
+    private long selfJdbcNanos;
+    private final Map<String, Integer> sqlCounts = new LinkedHashMap<>();
+    private final List<String> executedSql = new ArrayList<>();
+
+    QueryShapeScope(String name) {
+        this.name = name;
+    }
+
+    void recordStatement(String sql, String sqlWithValues, long elapsedNanos) {
+        statementCount++;
+        selfStatementCount++;
+        jdbcNanos += elapsedNanos;
+        selfJdbcNanos += elapsedNanos;
+        sqlCounts.merge(sql, 1, Integer::sum);
+        if (executedSql.size() < MAX_RECORDED_STATEMENTS) {
+            executedSql.add(sqlWithValues);
+        }
+    }
+
+    void recordFetch(long elapsedNanos, boolean hasNext) {
+        jdbcNanos += elapsedNanos;
+        selfJdbcNanos += elapsedNanos;
+        if (hasNext) {
+            rowCount++;
+            selfRowCount++;
+        }
+    }
+
+    /**닫힌 안쪽 scope의 합계를 바깥 scope에 더한다. 바깥 scope의 getSelf* 는 바뀌지 않는다.*/
+    void rollUpTo(QueryShapeScope parent) {
+        parent.statementCount += statementCount;
+        parent.rowCount += rowCount;
+        parent.jdbcNanos += jdbcNanos;
+        sqlCounts.forEach((sql, count) -> parent.sqlCounts.merge(sql, count, Integer::sum));
+        for (String sql : executedSql) {
+            if (parent.executedSql.size() >= MAX_RECORDED_STATEMENTS) {
+                break;
+            }
+            parent.executedSql.add(sql);
+        }
+    }
+
+    void end() {
+        endNanos = System.nanoTime();
+        allocatedBytes = Math.max(0, allocatedBytes() - startAllocatedBytes);
+        cpuNanos = Math.max(0, cpuNanos() - startCpuNanos);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getStatementCount() {
+        return statementCount;
+    }
+
+    /**select 문만 센다. flush로 나간 insert, update는 제외한다.*/
+    public int getSelectCount() {
+        return sqlCounts.entrySet().stream()
+                .filter(entry -> isSelect(entry.getKey()))
+                .mapToInt(Map.Entry::getValue)
+                .sum();
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public long getJdbcNanos() {
+        return jdbcNanos;
+    }
+
+    /**안쪽 scope를 제외하고 이 scope에서 직접 실행한 SQL 수*/
+    public int getSelfStatementCount() {
+        return selfStatementCount;
+    }
+
+    public long getSelfRowCount() {
+        return selfRowCount;
+    }
+
+    public long getSelfJdbcNanos() {
+        return selfJdbcNanos;
+    }
+
+    public long getElapsedNanos() {
+        return (endNanos == 0 ? System.nanoTime() : endNanos) - startNanos;
+    }
+
+    /**메서드 실행 동안 현재 스레드가 할당한 힙 메모리, JVM이 지원하지 않으면 0*/
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**메서드 실행 동안 현재 스레드가 사용한 CPU 시간, JVM이 지원하지 않으면 0*/
+    public long getCpuNanos() {
+        return cpuNanos;
+    }
+
+    /**JDBC 밖에서 사용한 시간, 엔티티/DTO 생성과 영속성 컨텍스트 처리 시간*/
+    public long getHydrationNanos() {
+        return Math.max(0, getElapsedNanos() - jdbcNanos);
+    }
+
+    /**실행된 SQL(파라미터 값 포함), 최대 200개까지 기록한다.*/
+    public List<String> getExecutedSql() {
+        return Collections.unmodifiableList(executedSql);
+    }
+
+    /**N+1 의심 SQL
+     * 같은 select 문이 threshold 번 이상 반복되면 루프 안에서 지연 로딩이 일어난 것으로 본다.
+     * */
+    public Map<String, Integer> getRepeatedSelects(int threshold) {
+        Map<String, Integer> repeated = new LinkedHashMap<>();
+        sqlCounts.forEach((sql, count) -> {
+            if (count >= threshold && isSelect(sql)) {
+                repeated.put(sql, count);
+            }
+        });
+        return repeated;
+    }
+
+    /**select 문인지 여부, 앞에 붙은 SQL 주석은 건너뛴다.*/
+    public static boolean isSelect(String sql) {
+        String statement = sql.trim();
+        //use_sql_comments 사용시 /* ... */ 주석이 앞에 붙는다.
+        while (statement.startsWith("/*") && statement.contains("*/")) {
+            statement = statement.substring(statement.indexOf("*/") + 2).trim();
+        }
+        return statement.regionMatches(true, 0, "select", 0, 6);
+    }
+
+    private static ThreadMXBean threadMXBean() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        return threads instanceof ThreadMXBean ? (ThreadMXBean) threads : null;
+    }
+
+    private static long allocatedBytes() {
+        return THREADS != null && THREADS.isThreadAllocatedMemoryEnabled() ? THREADS.getCurrentThreadAllocatedBytes() : 0;
+    }
+
+    private static long cpuNanos() {
+        return THREADS != null && THREADS.isThreadCpuTimeEnabled() ? THREADS.getCurrentThreadCpuTime() : 0;
+    }
+}
@@ -0,0 +1,58 @@
+package study.querydsl.monitoring;
+
+import lombok.Getter;
+
+import java.util.concurrent.TimeUnit;
+
+/**메서드별 누적 통계, actuator queryshape 엔드포인트 응답*/
+@Getter
+public class QueryShapeStats {
+
+    private long invocations;
+    private long statements;
+    private long rows;
+    private long jdbcNanos;
+    private long hydrationNanos;
+    private long allocatedBytes;
+    private long cpuNanos;
+    private int maxStatements;
+    private int maxPersistenceContextEntities;
+    private long nPlusOneDetections;
+    private String lastNPlusOneSql;
+
+    synchronized void add(QueryShapeScope scope, int persistenceContextEntities, String nPlusOneSql) {
+        invocations++;
+        statements += scope.getSelfStatementCount();
+        rows += scope.getSelfRowCount();
+        jdbcNanos += scope.getSelfJdbcNanos();
+        hydrationNanos += scope.getHydrationNanos();
+        allocatedBytes += scope.getAllocatedBytes();
+        cpuNanos += scope.getCpuNanos();
+        maxStatements = Math.max(maxStatements, scope.getSelfStatementCount());
+        maxPersistenceContextEntities = Math.max(maxPersistenceContextEntities, persistenceContextEntities);
+        if (nPlusOneSql != null) {
+            nPlusOneDetections++;
+            lastNPlusOneSql = nPlusOneSql;
+        }
+    }
+
+    public synchronized double getAvgStatements() {
+        return invocations == 0 ? 0 : (double) statements / invocations;
+    }
+
+    public synchronized double getAvgJdbcMillis() {
+        return invocations == 0 ? 0 : (double) TimeUnit.NANOSECONDS.toMillis(jdbcNanos) / invocations;
+    }
+
+    public synchronized double getAvgHydrationMillis() {
+        return invocations == 0 ? 0 : (double) TimeUnit.NANOSECONDS.toMillis(hydrationNanos) / invocations;
+    }
+
+    public synchronized long getAvgAllocatedBytes() {
+        return invocations == 0 ? 0 : allocatedBytes / invocations;
+    }
+
+    public synchronized double getAvgCpuMillis() {
+        return invocations == 0 ? 0 : (double) TimeUnit.NANOSECONDS.toMillis(cpuNanos) / invocations;
+    }
+}
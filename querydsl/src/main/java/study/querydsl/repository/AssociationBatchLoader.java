@@ -0,0 +1,94 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.Hibernate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Post;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceUnitUtil;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QPost.post;
+
+/**지연 로딩 연관관계 일괄 초기화
+ * Post 목록을 돌면서 getMember(), Member 목록을 돌면서 getPosts()를 호출하면 row 마다 지연 로딩 쿼리가 나간다(N+1).
+ * 아직 초기화되지 않은 연관관계의 id만 모아 batchSize 개씩 where id in (...) 쿼리 한 번으로 읽는다.
+ * 같은 id의 엔티티는 영속성 컨텍스트(트랜잭션 범위의 1차 캐시)에 하나만 존재하므로
+ * 조회된 엔티티가 기존 프록시, 컬렉션을 그대로 초기화하고 호출하는 쪽은 엔티티 API를 그대로 사용한다.
+ * 그러려면 엔티티를 조회한 트랜잭션 안에서 호출해야 하므로 트랜잭션이 없으면 예외(MANDATORY)가 발생한다.
+ * 트랜잭션 밖에서 새 영속성 컨텍스트로 조회하면 호출한 쪽의 준영속 프록시는 초기화되지 않아 LazyInitializationException이 난다.
+ * */
+@Component
+public class AssociationBatchLoader {
+
+    private final JPAQueryFactory queryFactory;
+    private final PersistenceUnitUtil persistenceUnitUtil;
+    private final int batchSize;
+
+    public AssociationBatchLoader(EntityManager em, @Value("${querydsl.batch-loader.batch-size:100}") int batchSize) {
+        this.queryFactory = new JPAQueryFactory(em);
+        this.persistenceUnitUtil = em.getEntityManagerFactory().getPersistenceUnitUtil();
+        this.batchSize = batchSize;
+    }
+
+    /**Post.member 초기화*/
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void loadMembers(Collection<Post> posts) {
+        Set<Long> memberIds = new LinkedHashSet<>();
+        for (Post p : posts) {
+            Member m = p.getMember();
+            if (m != null && !Hibernate.isInitialized(m)) {
+                //프록시를 초기화하지 않고 id를 꺼낸다.
+                memberIds.add((Long) persistenceUnitUtil.getIdentifier(m));
+            }
+        }
+        for (List<Long> chunk : chunks(memberIds)) {
+            queryFactory.selectFrom(member)
+                    .where(member.id.in(chunk))
+                    .fetch();
+        }
+    }
+
+    /**Member.posts 초기화*/
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void loadPosts(Collection<Member> members) {
+        Set<Long> memberIds = new LinkedHashSet<>();
+        for (Member m : members) {
+            if (!Hibernate.isInitialized(m.getPosts())) {
+                memberIds.add(m.getId());
+            }
+        }
+        for (List<Long> chunk : chunks(memberIds)) {
+            queryFactory.selectFrom(member).distinct()
+                    .leftJoin(member.posts, post).fetchJoin()
+                    .where(member.id.in(chunk))
+                    .fetch();
+        }
+    }
+
+    private List<List<Long>> chunks(Set<Long> ids) {
+        List<List<Long>> chunks = new ArrayList<>();
+        List<Long> chunk = new ArrayList<>(batchSize);
+        for (Long id : ids) {
+            chunk.add(id);
+            if (chunk.size() == batchSize) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>(batchSize);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,31 @@
+package study.querydsl.repository;
+
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+
+/**CountMode.CAPPED 페이징 결과
+ * 전체 개수가 countCap을 넘으면 totalCapped가 true가 되고 totalElements는 countCap이다.
+ * 화면에서는 "10,000+" 처럼 표시하면 된다.
+ * */
+public class CappedPage<T> extends PageImpl<T> {
+
+    private final long countCap;
+    private final boolean totalCapped;
+
+    /**total은 cap + 1 개까지 센 값, countCap을 넘으면 countCap으로 자른다.*/
+    public CappedPage(List<T> content, Pageable pageable, long total, long countCap) {
+        super(content, pageable, Math.min(total, countCap));
+        this.countCap = countCap;
+        this.totalCapped = total > countCap;
+    }
+
+    public long getCountCap() {
+        return countCap;
+    }
+
+    public boolean isTotalCapped() {
+        return totalCapped;
+    }
+}
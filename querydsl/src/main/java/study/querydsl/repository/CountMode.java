@@ -0,0 +1,9 @@
+package study.querydsl.repository;
+
+/**페이징 전체 개수(totalElements)를 구하는 방법
+ * EXACT: Count 쿼리로 정확한 전체 개수를 구한다.
+ * CAPPED: 최대 cap + 1 개까지만 세고 멈춘다. cap을 넘으면 전체 개수는 "cap 이상"으로만 알 수 있다.
+ * */
+public enum CountMode {
+    EXACT, CAPPED
+}
@@ -0,0 +1,134 @@
+package study.querydsl.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**Count 쿼리 전용 스레드 풀
+ * 내용 쿼리와 Count 쿼리를 동시에 실행하기 위해 Count 쿼리를 별도 스레드, 별도 커넥션(EntityManager)에서 실행한다.
+ * 작업마다 readOnly 트랜잭션을 새로 열기 때문에 호출한 쪽의 커밋되지 않은 변경은 보이지 않는다.
+ * 호출한 스레드는 커넥션을 잡은 채 Count를 기다리므로 대기 중인 작업이 쌓이면 커넥션 풀이 고갈되어 서로를 기다리게 된다.
+ * 1. 동시에 실행하는 Count 작업을 풀 크기(Semaphore)로 제한하고 자리가 없으면 큐에 넣지 않고 호출한 스레드에서 순서대로 실행한다.
+ *    호출한 스레드의 트랜잭션(커넥션)을 그대로 사용하므로 커넥션을 하나 더 잡지 않는다.
+ * 2. Count를 timeout 이상 기다리지 않는다. 인터럽트로는 실행중인 JDBC 쿼리가 멈추지 않으므로
+ *    Count 쿼리에 getQueryTimeoutMillis()를 query timeout으로 걸어 DB에서도 그 이상 실행되지 않게 한다.
+ * pool-size는 커넥션 풀 크기(hikari maximum-pool-size)보다 충분히 작게 설정해야 한다.
+ * JDK 21 이상으로 올리면 ThreadPoolExecutor 대신 Executors.newVirtualThreadPerTaskExecutor()에
+ * 커넥션 풀 크기만큼의 Semaphore를 두는 방식으로 바꿀 수 있다.
+ * */
+@Component
+public class CountQueryExecutor {
+
+    private final ThreadPoolExecutor executor;
+    private final Semaphore inFlight;
+    private final TransactionTemplate readOnlyTransaction;
+    private final long timeoutNanos;
+
+    public CountQueryExecutor(PlatformTransactionManager transactionManager,
+                              @Value("${querydsl.count-executor.pool-size:4}") int poolSize,
+                              @Value("${querydsl.count-executor.timeout:5s}") Duration timeout) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        //Semaphore가 동시에 실행하는 작업을 풀 크기로 제한하므로 큐에는 스레드가 반납되는 짧은 순간의 작업만 들어간다.
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "count-query-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+        this.inFlight = new Semaphore(poolSize);
+
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.readOnlyTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.timeoutNanos = timeout.toNanos();
+    }
+
+    /**자리가 있으면 풀에서 실행하고 없으면 await에서 호출한 스레드가 실행할 작업을 반환한다.*/
+    public Future<Long> submit(LongSupplier countQuery) {
+        if (!inFlight.tryAcquire()) {
+            return new CallerRunsCount(countQuery);
+        }
+        PooledCount task = new PooledCount(() -> readOnlyTransaction.execute(status -> countQuery.getAsLong()));
+        try {
+            executor.execute(task);
+            return task;
+        } catch (RejectedExecutionException e) {
+            inFlight.release();
+            return new CallerRunsCount(countQuery);
+        }
+    }
+
+    public long await(Future<Long> count) {
+        if (count instanceof CallerRunsCount) {
+            ((CallerRunsCount) count).run();
+        }
+        try {
+            return count.get(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("count query interrupted", e);
+        } catch (TimeoutException e) {
+            count.cancel(true);
+            throw new QueryTimeoutException("count query timed out after " + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + "ms", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**Count 쿼리에 거는 query timeout(javax.persistence.query.timeout), 기다리는 시간과 같다.*/
+    public int getQueryTimeoutMillis() {
+        return (int) Math.min(TimeUnit.NANOSECONDS.toMillis(timeoutNanos), Integer.MAX_VALUE);
+    }
+
+    public boolean isCallerRuns(Future<Long> count) {
+        return count instanceof CallerRunsCount;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**풀에서 실행하는 Count 작업
+     * 시작 전에 취소된 작업도 풀 스레드가 꺼내서 run을 호출하므로 run이 끝날 때 자리를 반납한다.
+     * */
+    private final class PooledCount extends FutureTask<Long> {
+
+        private PooledCount(Callable<Long> countQuery) {
+            super(countQuery);
+        }
+
+        @Override
+        public void run() {
+            try {
+                super.run();
+            } finally {
+                inFlight.release();
+            }
+        }
+    }
+
+    /**풀이 가득 찼을 때 await를 호출한 스레드가 직접 실행하는 Count 작업
+     * Count가 필요 없어서 await를 호출하지 않으면 실행되지 않는다.
+     * */
+    private static final class CallerRunsCount extends FutureTask<Long> {
+
+        private CallerRunsCount(LongSupplier countQuery) {
+            super(countQuery::getAsLong);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package study.querydsl.repository;
+
+import lombok.EqualsAndHashCode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.dto.CountCacheStats;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.support.AfterCommit;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**searchPageComplex Count 쿼리 결과 캐시
+ * 같은 검색 조건의 Count 쿼리가 반복되므로 정규화한 조건을 키로 결과를 캐시한다.
+ * 최대 크기를 넘으면 가장 오래 사용하지 않은 조건부터 버리고(LRU) TTL이 지나면 다시 조회한다.
+ * Member, Post가 변경되면 어떤 조건의 Count가 바뀌었는지 알 수 없으므로 전부 무효화한다.
+ * 커밋 전에 무효화하면 다른 트랜잭션이 커밋 전 Count를 다시 캐시하므로 변경은 invalidateAfterCommit()으로 커밋 후 무효화하고
+ * 변경한 트랜잭션은 자신의 변경이 반영된 Count를 봐야 하므로 커밋할 때까지 캐시를 거치지 않는다.
+ * */
+@Component
+public class MemberCountCache {
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final Map<Key, Entry> entries;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong invalidationCount = new AtomicLong();
+
+    //조회 중에 무효화가 일어나면 조회 결과를 저장하지 않기 위한 세대 번호
+    private long generation;
+
+    public MemberCountCache(@Value("${querydsl.count-cache.max-size:1000}") int maxSize,
+                            @Value("${querydsl.count-cache.ttl:30s}") Duration ttl) {
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > MemberCountCache.this.maxSize;
+            }
+        };
+    }
+
+    public long getOrLoad(MemberSearchCondition condition, LongSupplier countLoader) {
+        if (AfterCommit.isMarked(this)) {
+            missCount.incrementAndGet();
+            return countLoader.getAsLong();
+        }
+
+        Key key = Key.of(condition);
+        long loadGeneration;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expiresAt - System.nanoTime() > 0) {
+                hitCount.incrementAndGet();
+                return entry.count;
+            }
+            loadGeneration = generation;
+        }
+
+        missCount.incrementAndGet();
+        long count = countLoader.getAsLong();
+        synchronized (this) {
+            if (loadGeneration == generation) {
+                entries.put(key, new Entry(count, System.nanoTime() + ttlNanos));
+            }
+        }
+        return count;
+    }
+
+    /**Member, Post 변경 및 bulk 연산 후 호출
+     * 트랜잭션 안이면 커밋 후 무효화하고 그때까지 현재 트랜잭션의 조회는 캐시를 거치지 않는다.
+     * REQUIRES_NEW로 트랜잭션이 중단되면 표시도 함께 떼어내서 새 트랜잭션은 자신의 변경만 기준으로 동작한다.
+     * */
+    public void invalidateAfterCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidateAll();
+            return;
+        }
+        if (AfterCommit.mark(this)) {
+            AfterCommit.run(this::invalidateAll);
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        generation++;
+        entries.clear();
+        invalidationCount.incrementAndGet();
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    public CountCacheStats stats() {
+        return new CountCacheStats(getHitCount(), getMissCount(), invalidationCount.get(), getSize(), maxSize);
+    }
+
+    /**검색 조건 정규화
+     * 게시물 수 0 이하는 모든 회원이 만족하므로 조건 없음과 같은 키를 사용한다.
+     * 이름은 contains 조건이므로 공백이나 빈 문자열도 조건 없음과 결과가 달라 그대로 사용한다.
+     * */
+    @EqualsAndHashCode
+    private static final class Key {
+        private final String name;
+        private final Integer count;
+
+        private Key(String name, Integer count) {
+            this.name = name;
+            this.count = count;
+        }
+
+        static Key of(MemberSearchCondition condition) {
+            Integer count = condition.count;
+            return new Key(condition.name, count == null || count <= 0 ? null : count);
+        }
+    }
+
+    private static final class Entry {
+        private final long count;
+        private final long expiresAt;
+
+        private Entry(long count, long expiresAt) {
+            this.count = count;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
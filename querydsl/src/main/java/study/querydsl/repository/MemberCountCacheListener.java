@@ -0,0 +1,27 @@
+package study.querydsl.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+/**Member, Post 엔티티 변경시 Count 캐시 무효화
+ * 하이버네이트가 스프링 빈으로 엔티티 리스너를 생성하므로 캐시를 주입받을 수 있다.
+ * 롤백되거나 커밋 전인 변경 때문에 다른 트랜잭션이 잘못된 Count를 캐시하지 않도록 커밋 후 무효화한다.
+ * bulk 연산은 엔티티 리스너를 거치지 않으므로 MemberCountCache.invalidateAfterCommit()을 직접 호출해야 한다.
+ * */
+@Component
+@RequiredArgsConstructor
+public class MemberCountCacheListener {
+
+    private final MemberCountCache memberCountCache;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void invalidate(Object entity) {
+        memberCountCache.invalidateAfterCommit();
+    }
+}
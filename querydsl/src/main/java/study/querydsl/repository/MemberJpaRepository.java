@@ -2,29 +2,49 @@ package study.querydsl.repository;
 
 import com.querydsl.core.types.Predicate;
 import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import study.querydsl.dto.MemberPostDto;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.QMemberPostDto;
 
 import javax.persistence.EntityManager;
 import java.util.List;
+import java.util.function.Consumer;
 
 import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QPost.post;
 
 @Repository
+@Transactional(readOnly = true)
 public class MemberJpaRepository {
 
     private final EntityManager em;
     private final JPAQueryFactory queryFactory;
+    private final int streamFetchSize;
 
-    public MemberJpaRepository(EntityManager em) {
+    public MemberJpaRepository(EntityManager em, @Value("${querydsl.stream.fetch-size:1000}") int streamFetchSize) {
         this.em = em;
         this.queryFactory = new JPAQueryFactory(em);
+        this.streamFetchSize = streamFetchSize;
     }
 
     public List<MemberPostDto> searchByWhere(MemberSearchCondition condition) {
+        return searchByWhere(condition, PostCountStrategy.SUBQUERY);
+    }
+
+    public List<MemberPostDto> searchByWhere(MemberSearchCondition condition, PostCountStrategy strategy) {
+        if (strategy == PostCountStrategy.GROUP_BY) {
+            return searchByGroupBy(condition);
+        }
+        if (strategy == PostCountStrategy.COLUMN) {
+            return searchByPostCountColumn(condition);
+        }
         return queryFactory.select(new QMemberPostDto(member.id.as("memberId"), member.name, member.age,
                 member.posts.size().as("postCount"))).from(member)
                 .where(
@@ -32,6 +52,61 @@ public class MemberJpaRepository {
                 ).fetch();
     }
 
+    /** 검색 결과 스트리밍
+     * searchByWhere는 결과 전체를 List로 만들기 때문에 조건이 넓으면 메모리를 많이 사용한다.
+     * 앞으로만 이동하는 ScrollableResults로 fetchSize 만큼씩 읽으면서 한 건씩 consumer에 넘기므로 결과 크기와 상관없이 메모리 사용량이 일정하다.
+     * DTO로 바로 조회하므로 영속성 컨텍스트에 엔티티가 쌓이지 않아 중간에 em.clear()를 할 필요가 없다.
+     * readOnly 트랜잭션이므로 flush와 스냅샷 보관도 하지 않는다.
+     * */
+    public long streamByWhere(MemberSearchCondition condition, Consumer<MemberPostDto> consumer) {
+        JPAQuery<MemberPostDto> query = queryFactory.select(new QMemberPostDto(member.id.as("memberId"), member.name, member.age,
+                        member.posts.size().as("postCount"))).from(member)
+                .where(
+                        combineMethod(condition.name, condition.count)
+                );
+
+        org.hibernate.query.Query<?> hibernateQuery = query.createQuery().unwrap(org.hibernate.query.Query.class);
+        hibernateQuery.setFetchSize(streamFetchSize);
+        hibernateQuery.setReadOnly(true);
+
+        long streamed = 0;
+        try (ScrollableResults results = hibernateQuery.scroll(ScrollMode.FORWARD_ONLY)) {
+            while (results.next()) {
+                consumer.accept((MemberPostDto) results.get(0));
+                streamed++;
+            }
+        }
+        return streamed;
+    }
+
+    /** 게시물 수를 group by로 한번에 집계
+     * 회원마다 count 서브쿼리를 날리지 않고 post를 left join 해서 집계하므로 게시물이 없는 회원도 0으로 조회된다.
+     * count 조건은 집계 결과에 거는 조건이므로 where가 아닌 having에 건다.
+     * */
+    private List<MemberPostDto> searchByGroupBy(MemberSearchCondition condition) {
+        return queryFactory.select(new QMemberPostDto(member.id.as("memberId"), member.name, member.age,
+                        post.count().intValue().as("postCount"))).from(member)
+                .leftJoin(member.posts, post)
+                .where(
+                        nameContain(condition.name)
+                ).groupBy(member.id, member.name, member.age)
+                .having(
+                        postCountGoe(condition.count)
+                ).fetch();
+    }
+
+    /** 반정규화된 postCount 컬럼 사용
+     * 집계 쿼리 없이 회원 테이블만 읽는다.
+     * */
+    private List<MemberPostDto> searchByPostCountColumn(MemberSearchCondition condition) {
+        return queryFactory.select(new QMemberPostDto(member.id.as("memberId"), member.name, member.age,
+                        member.postCount)).from(member)
+                .where(
+                        nameContain(condition.name),
+                        postCountColumnGoe(condition.count)
+                ).fetch();
+    }
+
     /** Where 다중 파라미터 사용
      * 조건: 이름이 이름 param을 포함하고 올린 게시물이 param보다 크거나 같은 모든 회원 조회 동적 쿼리
      * 조립이 가능하고 재사용성이 있다는 장점이 있다.
@@ -44,6 +119,14 @@ public class MemberJpaRepository {
         return countCond != null ? member.posts.size().goe(countCond) : null;
     }
 
+    private BooleanExpression postCountGoe(Integer countCond) {
+        return countCond != null ? post.count().goe(countCond) : null;
+    }
+
+    private BooleanExpression postCountColumnGoe(Integer countCond) {
+        return countCond != null ? member.postCount.goe(countCond) : null;
+    }
+
     private Predicate combineMethod(String nameCond, Integer countCond) {
         if (nameCond == null && countCond == null) {
             return null;
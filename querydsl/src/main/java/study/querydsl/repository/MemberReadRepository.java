@@ -0,0 +1,121 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.FlushMode;
+import org.hibernate.annotations.QueryHints;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberAgeStats;
+import study.querydsl.dto.MemberDto;
+import study.querydsl.dto.MemberPostDto;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.PostTitleDto;
+import study.querydsl.dto.QMemberDto;
+import study.querydsl.dto.QMemberPostDto;
+import study.querydsl.dto.QPostTitleDto;
+import study.querydsl.service.agestats.MemberAgeStatistics;
+
+import javax.persistence.EntityManager;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QPost.post;
+
+/**조회 전용 리포지토리
+ * 엔티티를 조회한 뒤 DTO로 바꾸면 엔티티 생성, 영속성 컨텍스트 등록, 변경 감지용 스냅샷 복사 비용이 든다.
+ * 필요한 컬럼만 생성자(@QueryProjection)로 바로 DTO에 담아 영속성 컨텍스트를 거치지 않는다.
+ * 읽기 전용 트랜잭션에서 실행하고, 쓰기 트랜잭션에 참여하더라도 조회 전에 flush 하지 않도록 FlushMode.MANUAL 힌트를 준다.
+ * 따라서 쓰기 트랜잭션 안에서 호출하면 아직 flush 하지 않은 변경은 결과에 보이지 않는다. 필요하면 호출하는 쪽이 먼저 flush 한다.
+ * 검색 조건은 MemberRepositoryImpl과 같은 MemberSearchPredicates로 만든다.
+ * */
+@Repository
+@Transactional(readOnly = true)
+public class MemberReadRepository {
+
+    private final JPAQueryFactory queryFactory;
+    private final MemberAgeStatistics memberAgeStatistics;
+    private final MemberSearchPredicates searchPredicates;
+
+    public MemberReadRepository(EntityManager em, MemberAgeStatistics memberAgeStatistics,
+                                MemberSearchPredicates searchPredicates) {
+        this.queryFactory = new JPAQueryFactory(em);
+        this.memberAgeStatistics = memberAgeStatistics;
+        this.searchPredicates = searchPredicates;
+    }
+
+    /**조건에 맞는 회원의 이름, 나이
+     * flush 하지 않으므로 현재 트랜잭션에서 아직 flush 하지 않은 회원 변경은 보이지 않는다.
+     * */
+    public List<MemberDto> findMembers(MemberSearchCondition condition) {
+        return readOnly(queryFactory.select(new QMemberDto(member.name, member.age))
+                .from(member)
+                .where(searchPredicates.nameContain(condition.name), searchPredicates.postCountColumnGoe(condition.count))
+                .orderBy(member.id.asc()))
+                .fetch();
+    }
+
+    /**반정규화된 postCount 컬럼을 사용하므로 게시물 테이블을 읽지 않는다.
+     * flush 하지 않으므로 현재 트랜잭션에서 아직 flush 하지 않은 회원, 게시물 수 변경은 보이지 않는다.
+     * */
+    public List<MemberPostDto> findMemberPosts(MemberSearchCondition condition) {
+        return readOnly(queryFactory.select(new QMemberPostDto(member.id.as("memberId"), member.name, member.age, member.postCount))
+                .from(member)
+                .where(searchPredicates.nameContain(condition.name), searchPredicates.postCountColumnGoe(condition.count))
+                .orderBy(member.id.asc()))
+                .fetch();
+    }
+
+    /**조건에 맞는 회원의 게시물 제목
+     * flush 하지 않으므로 현재 트랜잭션에서 아직 flush 하지 않은 회원, 게시물 변경은 보이지 않는다.
+     * */
+    public List<PostTitleDto> findPostTitles(MemberSearchCondition condition) {
+        return readOnly(queryFactory.select(new QPostTitleDto(post.id, post.title))
+                .from(post)
+                .join(post.member, member)
+                .where(searchPredicates.nameContain(condition.name), searchPredicates.postCountColumnGoe(condition.count))
+                .orderBy(post.id.asc()))
+                .fetch();
+    }
+
+    /**회원 나이 통계, 메모리에 미리 계산된 값을 반환하므로 SQL을 실행하지 않는다.
+     * 커넥션이 필요 없으므로 클래스의 readOnly 트랜잭션을 시작하지 않는다.
+     * 커밋 후에 반영되므로 현재 트랜잭션의 변경은 flush 여부와 관계없이 보이지 않는다.
+     * */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public MemberAgeStats ageStats() {
+        return memberAgeStatistics.get();
+    }
+
+    /**회원 나이 통계를 DB에서 직접 집계한다. ageStats()와 정합성을 확인할 때 사용한다.
+     * flush 하지 않으므로 현재 트랜잭션에서 아직 flush 하지 않은 회원 변경은 집계되지 않는다.
+     * */
+    public MemberAgeStats ageStatsLive() {
+        int bucketSize = memberAgeStatistics.getBucketSize();
+        Tuple total = readOnly(queryFactory.select(member.count(), member.age.sum(), member.age.min(), member.age.max())
+                .from(member))
+                .fetchOne();
+
+        //나이별로 집계한 뒤 구간은 자바에서 합친다. 나이 종류는 많지 않다.
+        SortedMap<Integer, Long> buckets = new TreeMap<>();
+        for (Tuple tuple : readOnly(queryFactory.select(member.age, member.count()).from(member).groupBy(member.age)).fetch()) {
+            int age = tuple.get(member.age);
+            buckets.merge(Math.floorDiv(age, bucketSize) * bucketSize, tuple.get(member.count()), Long::sum);
+        }
+
+        //sum은 하이버네이트가 Long으로 반환하므로 Number로 꺼낸다.
+        Number sum = total.get(1, Number.class);
+        return new MemberAgeStats(total.get(member.count()), sum != null ? sum.longValue() : 0,
+                total.get(member.age.min()), total.get(member.age.max()), Collections.unmodifiableSortedMap(buckets));
+    }
+
+    private static <T> JPAQuery<T> readOnly(JPAQuery<T> query) {
+        return query.setHint(QueryHints.READ_ONLY, true)
+                .setHint(QueryHints.FLUSH_MODE, FlushMode.MANUAL);
+    }
+}
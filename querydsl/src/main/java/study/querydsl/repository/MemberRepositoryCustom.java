@@ -2,16 +2,42 @@ package study.querydsl.repository;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import study.querydsl.dto.MemberPostDto;
 import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
 
 import java.util.List;
 
 public interface MemberRepositoryCustom {
 
     List<MemberPostDto> searchByWhere(MemberSearchCondition condition);
+    List<MemberPostDto> searchByWhere(MemberSearchCondition condition, PostCountStrategy strategy);
+
+    /**조건 조합별로 미리 만든 JPQL을 사용하는 searchByWhere*/
+    List<MemberPostDto> searchByTemplate(MemberSearchCondition condition);
+
+    /**쿼리 결과 캐시를 사용하는 searchByWhere*/
+    List<MemberPostDto> searchByWhereCached(MemberSearchCondition condition);
 
     /**QueryDsl과 Spring Data Jpa 페이징 연동*/
     Page<MemberPostDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable);
     Page<MemberPostDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable);
+    Page<MemberPostDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable, CountMode countMode);
+
+    /**내용 쿼리와 Count 쿼리를 동시에 실행한다.*/
+    Page<MemberPostDto> searchPageParallel(MemberSearchCondition condition, Pageable pageable);
+
+    /**No Offset(커서) 페이징
+     * lastMemberId 이후의 회원을 size 만큼 조회한다. 첫 페이지는 lastMemberId에 null을 넘긴다.
+     * */
+    Slice<MemberPostDto> searchSliceByCursor(MemberSearchCondition condition, Long lastMemberId, int size);
+
+    /**회원들의 게시물 컬렉션을 in 쿼리로 한번에 초기화하고 members를 그대로 반환한다.
+     * members를 조회한 트랜잭션 안에서 호출해야 하고, 트랜잭션이 없으면 IllegalTransactionStateException이 발생한다.
+     * */
+    List<Member> loadPosts(List<Member> members);
+
+    /**반정규화된 게시물 수를 실제 게시물 수로 보정하고 보정된 회원 수를 반환한다.*/
+    long reconcilePostCount();
 }
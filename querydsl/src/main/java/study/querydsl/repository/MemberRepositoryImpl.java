@@ -3,36 +3,76 @@ package study.querydsl.repository;
 import com.querydsl.core.QueryResults;
 import com.querydsl.core.types.Predicate;
 import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.JPAExpressions;
+import com.querydsl.jpa.JPQLQuery;
 import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.annotations.QueryHints;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import study.querydsl.dto.MemberPostDto;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.QMemberPostDto;
 import study.querydsl.entity.Member;
 
 import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
 import java.util.List;
+import java.util.concurrent.Future;
 
 import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QPost.post;
 
 @Repository
+@Transactional(readOnly = true)
 public class MemberRepositoryImpl implements MemberRepositoryCustom {
 
+    public static final String MEMBER_SEARCH_REGION = "memberSearch";
+
     private final EntityManager em;
     private final JPAQueryFactory queryFactory;
+    private final MemberCountCache countCache;
+    private final CountQueryExecutor countQueryExecutor;
+    private final MemberSearchPredicates searchPredicates;
+    private final AssociationBatchLoader associationBatchLoader;
+    private final long countCap;
 
-    public MemberRepositoryImpl(EntityManager em) {
+    public MemberRepositoryImpl(EntityManager em, MemberCountCache countCache, CountQueryExecutor countQueryExecutor,
+                                MemberSearchPredicates searchPredicates, AssociationBatchLoader associationBatchLoader,
+                                @Value("${querydsl.count.cap:10000}") long countCap) {
         this.em = em;
         this.queryFactory = new JPAQueryFactory(em);
+        this.countCache = countCache;
+        this.countQueryExecutor = countQueryExecutor;
+        this.searchPredicates = searchPredicates;
+        this.associationBatchLoader = associationBatchLoader;
+        this.countCap = countCap;
     }
 
     @Override
     public List<MemberPostDto> searchByWhere(MemberSearchCondition condition) {
+        return searchByWhere(condition, PostCountStrategy.SUBQUERY);
+    }
+
+    @Override
+    public List<MemberPostDto> searchByWhere(MemberSearchCondition condition, PostCountStrategy strategy) {
+        flushBeforeNameSearch(condition);
+        if (strategy == PostCountStrategy.GROUP_BY) {
+            return searchByGroupBy(condition);
+        }
+        if (strategy == PostCountStrategy.COLUMN) {
+            return searchByPostCountColumn(condition);
+        }
         return queryFactory.select(new QMemberPostDto(member.id.as("memberId"), member.name, member.age,
                 member.posts.size().as("postCount"))).from(member)
                 .where(
@@ -40,27 +80,104 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom {
                 ).fetch();
     }
 
-    /** Where 다중 파라미터 사용
-     * 조건: 이름이 이름 param을 포함하고 올린 게시물이 param보다 크거나 같은 모든 회원 조회 동적 쿼리
-     * 조립이 가능하고 재사용성이 있다는 장점이 있다.
+    /** 미리 만든 JPQL 사용
+     * searchByWhere와 결과는 같고 요청마다 QueryDSL 쿼리를 만들지 않는다.
+     * */
+    @Override
+    public List<MemberPostDto> searchByTemplate(MemberSearchCondition condition) {
+        MemberSearchTemplate template = MemberSearchTemplate.of(condition);
+        TypedQuery<MemberPostDto> query = em.createQuery(template.jpql(), MemberPostDto.class);
+        if (template.hasName()) {
+            query.setParameter("name", MemberSearchTemplate.containsPattern(condition.name));
+        }
+        if (template.hasCount()) {
+            query.setParameter("count", condition.count);
+        }
+        return query.getResultList();
+    }
+
+    /** 쿼리 결과 캐시 사용
+     * 같은 조건의 결과를 하이버네이트 쿼리 캐시(memberSearch 영역)에서 조회한다.
+     * member, post 테이블이 변경되면(bulk 연산 포함) 하이버네이트가 커밋 시점에 해당 결과를 무효화하므로 직접 비울 필요가 없다.
+     * 하이버네이트를 거치지 않고 테이블을 바꾸는 경로(JDBC 직접 실행 등)를 추가하면 그 경로에서 memberSearch 영역을 비워야 한다.
+     * use_query_cache 설정이 꺼져 있으면 일반 조회와 같다.
      * */
-    private BooleanExpression nameContain(String nameCond) {
-        return nameCond != null ? member.name.contains(nameCond) : null;
+    @Override
+    public List<MemberPostDto> searchByWhereCached(MemberSearchCondition condition) {
+        flushBeforeNameSearch(condition);
+        return queryFactory.select(new QMemberPostDto(member.id.as("memberId"), member.name, member.age,
+                        member.posts.size().as("postCount"))).from(member)
+                .where(
+                        combineMethod(condition.name, condition.count)
+                ).setHint(QueryHints.CACHEABLE, true)
+                .setHint(QueryHints.CACHE_REGION, MEMBER_SEARCH_REGION)
+                .fetch();
+    }
+
+    /** 게시물 수를 group by로 한번에 집계
+     * 회원마다 count 서브쿼리를 날리지 않고 post를 left join 해서 집계하므로 게시물이 없는 회원도 0으로 조회된다.
+     * count 조건은 집계 결과에 거는 조건이므로 where가 아닌 having에 건다.
+     * */
+    private List<MemberPostDto> searchByGroupBy(MemberSearchCondition condition) {
+        return queryFactory.select(new QMemberPostDto(member.id.as("memberId"), member.name, member.age,
+                        post.count().intValue().as("postCount"))).from(member)
+                .leftJoin(member.posts, post)
+                .where(
+                        searchPredicates.nameContain(condition.name)
+                ).groupBy(member.id, member.name, member.age)
+                .having(
+                        postCountGoe(condition.count)
+                ).fetch();
+    }
+
+    /** 반정규화된 postCount 컬럼 사용
+     * 집계 쿼리 없이 회원 테이블만 읽는다.
+     * */
+    private List<MemberPostDto> searchByPostCountColumn(MemberSearchCondition condition) {
+        return queryFactory.select(new QMemberPostDto(member.id.as("memberId"), member.name, member.age,
+                        member.postCount)).from(member)
+                .where(
+                        searchPredicates.nameContain(condition.name),
+                        searchPredicates.postCountColumnGoe(condition.count)
+                ).fetch();
+    }
+
+    /**이름 조건이 있으면 검색 조건을 만들기 전에 현재 트랜잭션의 변경을 flush 한다.
+     * 아직 flush 하지 않은 회원 변경은 엔티티 리스너가 호출되지 않아 MemberSearchPredicates.nameContain이 색인을 쓸지 판단할 수 없다.
+     * 조회 쿼리도 실행 전에 같은 flush(AUTO)를 하므로 시점을 앞당길 뿐이고, 쓰기 트랜잭션이 아니면 하지 않는다.
+     * 검색 조건을 만드는 메서드는 flush 하지 않으므로 검색 메서드 시작에서 호출한다.
+     * */
+    private void flushBeforeNameSearch(MemberSearchCondition condition) {
+        if (condition.name != null && isWriteTransaction()) {
+            em.flush();
+        }
     }
 
     private BooleanExpression countGoe(Integer countCond) {
         return countCond != null ? member.posts.size().goe(countCond) : null;
     }
 
+    private BooleanExpression memberIdGt(Long lastMemberId) {
+        return lastMemberId != null ? member.id.gt(lastMemberId) : null;
+    }
+
+    private BooleanExpression postCountGoe(Integer countCond) {
+        return countCond != null ? post.count().goe(countCond) : null;
+    }
+
+    /** Where 다중 파라미터 사용
+     * 조건: 이름이 이름 param을 포함하고 올린 게시물이 param보다 크거나 같은 모든 회원 조회 동적 쿼리
+     * 조립이 가능하고 재사용성이 있다는 장점이 있다.
+     * */
     private Predicate combineMethod(String nameCond, Integer countCond) {
         if (nameCond == null && countCond == null) {
             return null;
         } else if(nameCond == null && countCond != null) {
             return countGoe(countCond);
         } else if(nameCond != null && countCond == null) {
-            return nameContain(nameCond);
+            return searchPredicates.nameContain(nameCond);
         } else {
-            return nameContain(nameCond).and(countGoe(countCond));
+            return searchPredicates.nameContain(nameCond).and(countGoe(countCond));
         }
     }
 
@@ -69,6 +186,7 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom {
      * */
     @Override
     public Page<MemberPostDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable) {
+        flushBeforeNameSearch(condition);
         QueryResults<MemberPostDto> result = queryFactory.select(new QMemberPostDto(member.id.as("memberId"), member.name, member.age,
                         member.posts.size().as("postCount"))).from(member)
                 .where(
@@ -87,6 +205,15 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom {
      * */
     @Override
     public Page<MemberPostDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable) {
+        return searchPageComplex(condition, pageable, CountMode.EXACT);
+    }
+
+    /**Count 방식 선택
+     * CAPPED는 Count 쿼리 대신 cap + 1 개까지만 id를 조회하므로 조건에 맞는 데이터가 아무리 많아도 cap + 1 개에서 멈춘다.
+     * */
+    @Override
+    public Page<MemberPostDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable, CountMode countMode) {
+        flushBeforeNameSearch(condition);
         List<MemberPostDto> content = queryFactory.select(new QMemberPostDto(member.id.as("memberId"), member.name, member.age,
                         member.posts.size().as("postCount"))).from(member)
                 .where(
@@ -95,13 +222,126 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom {
                 .limit(pageable.getPageSize())
                 .fetch();
 
-        JPAQuery<Member> countQuery = queryFactory.selectFrom(member)
+        if (countMode == CountMode.CAPPED) {
+            Page<MemberPostDto> page = PageableExecutionUtils.getPage(content, pageable, () -> fetchCappedCount(condition));
+            return new CappedPage<>(page.getContent(), pageable, page.getTotalElements(), countCap);
+        }
+
+        //selectFrom(member)로 엔티티를 조회할 필요 없이 count만 조회한다.
+        JPAQuery<Long> countQuery = queryFactory.select(member.count()).from(member)
                 .where(
                         combineMethod(condition.name, condition.count)
                 );
 
         //조건을 만족하지 않으면 countQuery를 날린다.
         //조건: 첫페이지에 모든 데이터를 조회한경우
-        return PageableExecutionUtils.getPage(content, pageable, ()->countQuery.fetchCount());
+        //같은 조건의 Count는 캐시된 값을 사용한다.
+        return PageableExecutionUtils.getPage(content, pageable,
+                () -> countCache.getOrLoad(condition, countQuery::fetchOne));
+    }
+
+    /**내용 쿼리와 Count 쿼리 동시 실행
+     * Count 쿼리를 먼저 다른 스레드에 맡기고 내용 쿼리를 실행하므로 응답 시간이 두 쿼리의 합이 아닌 긴 쪽의 시간이 된다.
+     * Count 스레드는 새 readOnly 트랜잭션에서 실행하므로 호출한 쪽 트랜잭션의 커밋되지 않은 변경이 보이지 않는다.
+     * 쓰기 트랜잭션 안에서 호출하면 전체 개수가 내용과 어긋나고 Count 캐시에도 그 값이 남으므로 searchPageComplex처럼 같은 트랜잭션에서 순서대로 조회한다.
+     * PageableExecutionUtils가 Count가 필요 없다고 판단하면(첫 페이지에 모든 데이터를 조회한 경우 등) Count 작업을 취소한다.
+     * 아직 시작하지 않은 Count 작업은 실행되지 않지만 인터럽트로는 실행중인 JDBC 쿼리가 멈추지 않으므로
+     * Count 쿼리에 query timeout(querydsl.count-executor.timeout)을 걸어 DB에서도 그 이상 실행되지 않게 한다.
+     * Count 스레드가 모두 사용 중이면 내용 쿼리 후 같은 트랜잭션에서 순서대로 Count를 조회한다.
+     * 검색 조건은 호출한 스레드에서 한 번 만들어 두 쿼리가 같이 사용한다.
+     * */
+    @Override
+    public Page<MemberPostDto> searchPageParallel(MemberSearchCondition condition, Pageable pageable) {
+        if (isWriteTransaction()) {
+            return searchPageComplex(condition, pageable);
+        }
+
+        Predicate where = combineMethod(condition.name, condition.count);
+        Future<Long> count = countQueryExecutor.submit(() -> countCache.getOrLoad(condition,
+                () -> queryFactory.select(member.count()).from(member)
+                        .where(where)
+                        .setHint(QueryHints.TIMEOUT_JPA, countQueryExecutor.getQueryTimeoutMillis())
+                        .fetchOne()));
+        try {
+            List<MemberPostDto> content = queryFactory.select(new QMemberPostDto(member.id.as("memberId"), member.name, member.age,
+                            member.posts.size().as("postCount"))).from(member)
+                    .where(where)
+                    .offset(pageable.getOffset())
+                    .limit(pageable.getPageSize())
+                    .fetch();
+
+            return PageableExecutionUtils.getPage(content, pageable, () -> countQueryExecutor.await(count));
+        } finally {
+            count.cancel(true);
+        }
+    }
+
+    private boolean isWriteTransaction() {
+        return TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    /**cap + 1 개까지만 센다.
+     * JPQL(HQL)은 from 절 서브쿼리를 지원하지 않아 select count(*) from (select 1 ... limit ?) 로 DB에서 세지 못하므로
+     * 조건에 맞는 id를 cap + 1 개까지만 가져와 개수를 센다. id 컬럼만 읽으므로 전송량은 cap에 비례하고 엔티티는 만들지 않는다.
+     * 네이티브 SQL로 바꾸면 이름 검색 색인(nameContain)과 size(m.posts) 조건을 SQL로 다시 만들어야 하므로 검색 조건을 한 곳에서 만들 수 없다.
+     * */
+    private long fetchCappedCount(MemberSearchCondition condition) {
+        return queryFactory.select(member.id).from(member)
+                .where(
+                        combineMethod(condition.name, condition.count)
+                ).limit(countCap + 1)
+                .fetch().size();
+    }
+
+    /**No Offset(커서) 페이징
+     * offset은 앞의 데이터를 모두 읽고 버리므로 뒤 페이지로 갈수록 느려진다.
+     * 마지막으로 조회한 memberId보다 큰 회원만 PK 순서로 조회하므로 몇 번째 페이지든 비용이 같다.
+     * size + 1 개를 조회해서 다음 페이지 존재 여부를 판단하므로 Count 쿼리가 필요 없다.
+     * */
+    @Override
+    public Slice<MemberPostDto> searchSliceByCursor(MemberSearchCondition condition, Long lastMemberId, int size) {
+        flushBeforeNameSearch(condition);
+        List<MemberPostDto> content = queryFactory.select(new QMemberPostDto(member.id.as("memberId"), member.name, member.age,
+                        member.posts.size().as("postCount"))).from(member)
+                .where(
+                        combineMethod(condition.name, condition.count),
+                        memberIdGt(lastMemberId)
+                ).orderBy(member.id.asc())
+                .limit(size + 1)
+                .fetch();
+
+        boolean hasNext = content.size() > size;
+        if (hasNext) {
+            content.remove(size);
+        }
+        return new SliceImpl<>(content, PageRequest.of(0, size), hasNext);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public List<Member> loadPosts(List<Member> members) {
+        associationBatchLoader.loadPosts(members);
+        return members;
+    }
+
+    /**게시물 수 보정
+     * 반정규화된 postCount가 실제 게시물 수와 다른 회원만 찾아 bulk 연산으로 다시 계산한다.
+     * bulk 연산은 영속성 컨텍스트를 거치지 않으므로 version도 함께 올려 동시에 수정 중인 엔티티는 실패하게 만든다.
+     * */
+    @Override
+    @Transactional
+    public long reconcilePostCount() {
+        long reconciled = queryFactory.update(member)
+                .set(member.postCount, actualPostCount())
+                .set(member.version, member.version.add(1))
+                .where(member.postCount.ne(actualPostCount()))
+                .execute();
+        countCache.invalidateAfterCommit();
+        return reconciled;
+    }
+
+    private JPQLQuery<Integer> actualPostCount() {
+        return JPAExpressions.select(post.count().intValue()).from(post).where(post.member.eq(member));
     }
 }
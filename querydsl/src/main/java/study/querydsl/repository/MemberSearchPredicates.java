@@ -0,0 +1,43 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.dsl.BooleanExpression;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import study.querydsl.repository.name.MemberNameSearch;
+import study.querydsl.support.AfterCommit;
+
+import java.util.Set;
+
+import static study.querydsl.entity.QMember.member;
+
+/**회원 검색 조건
+ * MemberRepositoryImpl과 MemberReadRepository가 같은 조건, 같은 이름 검색 방식(MemberNameSearch)을 사용하도록 한 곳에서 만든다.
+ * 조건 값이 null이면 null을 반환하므로 where에 그대로 넘기면 조건에서 빠진다.
+ * */
+@Component
+@RequiredArgsConstructor
+class MemberSearchPredicates {
+
+    private final MemberNameSearch memberNameSearch;
+
+    /**이름 포함
+     * 이름 검색 색인에서 후보 id를 찾으면 like 대신 PK로 조회한다.
+     * 색인은 커밋 후에 반영되므로 현재 트랜잭션에서 저장, 이름 변경, 삭제한 회원이 있으면 like를 사용한다.
+     * 아직 flush 하지 않은 변경은 엔티티 리스너가 호출되지 않아 알 수 없으므로, 그 변경까지 검색하려면 호출하는 쪽이 먼저 flush 한다.
+     * */
+    BooleanExpression nameContain(String nameCond) {
+        if (nameCond == null) {
+            return null;
+        }
+        Set<Long> memberIds = memberNameSearch.findIdsContaining(nameCond);
+        if (memberIds != null && AfterCommit.isMarked(memberNameSearch)) {
+            memberIds = null;
+        }
+        return memberIds != null ? member.id.in(memberIds) : member.name.contains(nameCond);
+    }
+
+    /**반정규화된 postCount 컬럼으로 게시물 수 조건을 건다.*/
+    BooleanExpression postCountColumnGoe(Integer countCond) {
+        return countCond != null ? member.postCount.goe(countCond) : null;
+    }
+}
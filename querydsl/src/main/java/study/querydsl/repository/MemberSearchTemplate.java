@@ -0,0 +1,71 @@
+package study.querydsl.repository;
+
+import study.querydsl.dto.MemberSearchCondition;
+
+/**searchByWhere 조건 조합별 미리 만든 JPQL
+ * 조건 조합(이름, 게시물 수)은 4가지뿐이므로 조합별 JPQL을 한번만 만들어두고 요청마다 파라미터만 바인딩한다.
+ * QueryDSL 표현식 트리 생성과 JPQL 직렬화를 하지 않고 JPQL 문자열이 항상 같으므로 하이버네이트 쿼리 플랜 캐시도 항상 hit 된다.
+ * 이름 조건은 QueryDSL contains와 같이 like '%이름%' escape '!' 로 만든다.
+ * */
+enum MemberSearchTemplate {
+
+    NONE(false, false),
+    NAME(true, false),
+    COUNT(false, true),
+    NAME_COUNT(true, true);
+
+    private static final char ESCAPE = '!';
+    private static final String SELECT = "select new study.querydsl.dto.MemberPostDto(m.id, m.name, m.age, size(m.posts))" +
+            " from Member m";
+    private static final String NAME_CONTAINS = "m.name like :name escape '" + ESCAPE + "'";
+    private static final String COUNT_GOE = "size(m.posts) >= :count";
+
+    private final boolean hasName;
+    private final boolean hasCount;
+    private final String jpql;
+
+    MemberSearchTemplate(boolean hasName, boolean hasCount) {
+        this.hasName = hasName;
+        this.hasCount = hasCount;
+        if (hasName && hasCount) {
+            this.jpql = SELECT + " where " + NAME_CONTAINS + " and " + COUNT_GOE;
+        } else if (hasName) {
+            this.jpql = SELECT + " where " + NAME_CONTAINS;
+        } else if (hasCount) {
+            this.jpql = SELECT + " where " + COUNT_GOE;
+        } else {
+            this.jpql = SELECT;
+        }
+    }
+
+    static MemberSearchTemplate of(MemberSearchCondition condition) {
+        if (condition.name != null) {
+            return condition.count != null ? NAME_COUNT : NAME;
+        }
+        return condition.count != null ? COUNT : NONE;
+    }
+
+    String jpql() {
+        return jpql;
+    }
+
+    boolean hasName() {
+        return hasName;
+    }
+
+    boolean hasCount() {
+        return hasCount;
+    }
+
+    /**like 특수문자(%, _)와 escape 문자를 escape 한 뒤 %로 감싼다.*/
+    static String containsPattern(String name) {
+        StringBuilder pattern = new StringBuilder(name.length() + 2).append('%');
+        for (char c : name.toCharArray()) {
+            if (c == '%' || c == '_' || c == ESCAPE) {
+                pattern.append(ESCAPE);
+            }
+            pattern.append(c);
+        }
+        return pattern.append('%').toString();
+    }
+}
@@ -0,0 +1,10 @@
+package study.querydsl.repository;
+
+/**회원의 게시물 수(postCount)를 구하는 방법
+ * SUBQUERY: member.posts.size() 회원 row마다 count 서브쿼리가 나간다. where 절에서도 한번 더 나간다.
+ * GROUP_BY: post를 left join 후 group by 로 한번에 집계한다. count 조건은 having 으로 건다.
+ * COLUMN: 회원 테이블에 반정규화된 post_count 컬럼을 그대로 읽는다. 집계 쿼리가 나가지 않는다.
+ * */
+public enum PostCountStrategy {
+    SUBQUERY, GROUP_BY, COLUMN
+}
@@ -0,0 +1,20 @@
+package study.querydsl.repository;
+
+import org.springframework.data.domain.Slice;
+import study.querydsl.dto.PostTitleDto;
+import study.querydsl.entity.Post;
+
+import java.util.List;
+
+public interface PostRepositoryCustom {
+
+    /**게시물들의 작성자를 in 쿼리로 한번에 초기화하고 posts를 그대로 반환한다.
+     * posts를 조회한 트랜잭션 안에서 호출해야 하고, 트랜잭션이 없으면 IllegalTransactionStateException이 발생한다.
+     * */
+    List<Post> loadMembers(List<Post> posts);
+
+    /**작성자의 게시물 No Offset(커서) 페이징
+     * lastPostId 이후의 게시물을 id 순서로 size 만큼 조회한다. 첫 페이지는 lastPostId에 null을 넘긴다.
+     * */
+    Slice<PostTitleDto> findPostsOfMember(Long memberId, Long lastPostId, int size);
+}
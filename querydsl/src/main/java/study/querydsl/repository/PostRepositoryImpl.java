@@ -0,0 +1,60 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.PostTitleDto;
+import study.querydsl.dto.QPostTitleDto;
+import study.querydsl.entity.Post;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static study.querydsl.entity.QPost.post;
+
+@Repository
+@Transactional(readOnly = true)
+public class PostRepositoryImpl implements PostRepositoryCustom {
+
+    private final JPAQueryFactory queryFactory;
+    private final AssociationBatchLoader associationBatchLoader;
+
+    public PostRepositoryImpl(EntityManager em, AssociationBatchLoader associationBatchLoader) {
+        this.queryFactory = new JPAQueryFactory(em);
+        this.associationBatchLoader = associationBatchLoader;
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public List<Post> loadMembers(List<Post> posts) {
+        associationBatchLoader.loadMembers(posts);
+        return posts;
+    }
+
+    /**작성자의 게시물 커서 페이징
+     * member.getPosts()는 작성자의 게시물 전체를 메모리에 올리지만
+     * (MEMBER_ID, POST_ID) 인덱스 범위에서 size + 1 개의 행만 찾아 그 행의 (postId, title)만 조회하므로 게시물이 아무리 많아도 비용이 같다.
+     * post.member.id는 FK 컬럼이므로 member와 join 하지 않는다.
+     * */
+    @Override
+    public Slice<PostTitleDto> findPostsOfMember(Long memberId, Long lastPostId, int size) {
+        List<PostTitleDto> content = queryFactory.select(new QPostTitleDto(post.id, post.title))
+                .from(post)
+                .where(
+                        post.member.id.eq(memberId),
+                        lastPostId != null ? post.id.gt(lastPostId) : null
+                ).orderBy(post.id.asc())
+                .limit(size + 1)
+                .fetch();
+
+        boolean hasNext = content.size() > size;
+        if (hasNext) {
+            content.remove(size);
+        }
+        return new SliceImpl<>(content, PageRequest.of(0, size), hasNext);
+    }
+}
@@ -0,0 +1,17 @@
+package study.querydsl.repository.name;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+
+/**항상 like 조건을 사용한다.*/
+@Component
+@ConditionalOnProperty(name = "querydsl.name-search", havingValue = "like", matchIfMissing = true)
+public class LikeMemberNameSearch implements MemberNameSearch {
+
+    @Override
+    public Set<Long> findIdsContaining(String nameCond) {
+        return null;
+    }
+}
@@ -0,0 +1,27 @@
+package study.querydsl.repository.name;
+
+import java.util.Set;
+
+/**회원 이름 포함(contains) 검색 전략
+ * like '%이름%'은 B-tree 인덱스를 사용할 수 없어 항상 전체 회원을 읽는다.
+ * 전략이 후보 id를 찾아주면 리포지토리는 like 대신 member.id in (...) 으로 조회한다.
+ * querydsl.name-search: like(기본) | ngram
+ * */
+public interface MemberNameSearch {
+
+    /**nameCond를 이름에 포함하는 회원 id, 전략으로 찾을 수 없으면 null을 반환하고 like 조건을 사용한다.*/
+    Set<Long> findIdsContaining(String nameCond);
+
+    /**memberId의 이름이 색인에 그대로 있으면 true, 변경을 커밋 전까지 색인에 반영하지 않는 전략은 false를 반환한다.*/
+    default boolean isIndexed(Long memberId, String name) {
+        return false;
+    }
+
+    /**회원 저장, 이름 변경*/
+    default void index(Long memberId, String name) {
+    }
+
+    /**회원 삭제*/
+    default void remove(Long memberId) {
+    }
+}
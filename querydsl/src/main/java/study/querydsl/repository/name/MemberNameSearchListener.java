@@ -0,0 +1,40 @@
+package study.querydsl.repository.name;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import study.querydsl.entity.Member;
+import study.querydsl.support.AfterCommit;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+/**Member 저장, 이름 변경, 삭제를 이름 검색 색인에 반영
+ * 롤백된 변경이 색인에 남지 않도록 트랜잭션 커밋 후에 반영한다.
+ * 그때까지 같은 트랜잭션의 이름 검색이 색인 대신 like를 사용하도록 트랜잭션에 MemberNameSearch를 표시한다.
+ * 이름이 그대로인 수정(postCount 변경 등)은 표시하지 않는다.
+ * */
+@Component
+@RequiredArgsConstructor
+public class MemberNameSearchListener {
+
+    private final MemberNameSearch memberNameSearch;
+
+    @PostPersist
+    @PostUpdate
+    public void index(Member member) {
+        Long memberId = member.getId();
+        String name = member.getName();
+        if (!memberNameSearch.isIndexed(memberId, name)) {
+            AfterCommit.mark(memberNameSearch);
+        }
+        AfterCommit.run(() -> memberNameSearch.index(memberId, name));
+    }
+
+    @PostRemove
+    public void remove(Member member) {
+        Long memberId = member.getId();
+        AfterCommit.mark(memberNameSearch);
+        AfterCommit.run(() -> memberNameSearch.remove(memberId));
+    }
+}
@@ -0,0 +1,82 @@
+package study.querydsl.repository.name;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.service.MembersBulkChangedEvent;
+
+import javax.persistence.EntityManager;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static study.querydsl.entity.QMember.member;
+
+/**시작시, 그리고 querydsl.name-search.rebuild-interval 마다 전체 회원 이름을 읽어 trigram 색인을 교체한다.
+ * 읽는 동안 커밋된 변경은 NgramMemberNameSearch.reload가 교체 후 다시 반영한다.
+ * 커밋 후 콜백의 순서가 바뀌어 색인이 DB와 어긋나도 다음 교체 때 바로잡힌다.
+ * 이후 변경은 MemberNameSearchListener가, bulk 연산으로 인한 변경은 MembersBulkChangedEvent로 반영한다.
+ * */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "querydsl.name-search", havingValue = "ngram")
+public class NgramIndexLoader {
+
+    private final JPAQueryFactory queryFactory;
+    private final NgramMemberNameSearch nameSearch;
+    private final TransactionTemplate readOnlyTransaction;
+
+    public NgramIndexLoader(EntityManager em, NgramMemberNameSearch nameSearch,
+                            PlatformTransactionManager transactionManager) {
+        this.queryFactory = new JPAQueryFactory(em);
+        this.nameSearch = nameSearch;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.readOnlyTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        rebuild();
+        log.info("member name index loaded members = {}", nameSearch.size());
+    }
+
+    @Scheduled(initialDelayString = "${querydsl.name-search.rebuild-interval:600000}",
+            fixedDelayString = "${querydsl.name-search.rebuild-interval:600000}")
+    public void rebuild() {
+        nameSearch.reload(() -> readOnlyTransaction.execute(status -> loadNames()));
+    }
+
+    /**bulk 연산으로 변경된 회원의 이름을 다시 읽어 색인에 반영한다.*/
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBulkChanged(MembersBulkChangedEvent event) {
+        if (event.isRemoved()) {
+            event.getMemberIds().forEach(nameSearch::remove);
+            return;
+        }
+        List<Tuple> members = queryFactory.select(member.id, member.name)
+                .from(member)
+                .where(member.id.in(event.getMemberIds()))
+                .fetch();
+        for (Tuple tuple : members) {
+            nameSearch.index(tuple.get(member.id), tuple.get(member.name));
+        }
+    }
+
+    private Map<Long, String> loadNames() {
+        Map<Long, String> names = new HashMap<>();
+        for (Tuple tuple : queryFactory.select(member.id, member.name).from(member).fetch()) {
+            names.put(tuple.get(member.id), tuple.get(member.name));
+        }
+        return names;
+    }
+}
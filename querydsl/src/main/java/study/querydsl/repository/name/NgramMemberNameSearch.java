@@ -0,0 +1,139 @@
+package study.querydsl.repository.name;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import study.querydsl.support.ReloadRecorder;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**메모리 trigram 역색인
+ * 이름을 3글자씩 자른 gram 마다 해당 gram을 가진 회원 id를 저장한다.
+ * 검색어의 gram을 모두 가진 회원 id를 교집합으로 구한 뒤 실제로 검색어를 포함하는지 확인한다.
+ * 검색어가 3글자보다 짧거나, 후보가 maxCandidates 보다 많거나, 시작시 색인이 끝나지 않았으면 like를 사용한다.
+ * 한 회원의 이름과 gram 목록은 함께 바뀌어야 하므로 index, remove는 락 안에서 실행하고 조회는 락 없이 읽는다.
+ * 시작시와 주기적으로 DB에서 다시 읽어 통째로 교체한다. 읽는 동안 반영된 변경은 교체 후에도 남긴다. (NgramIndexLoader)
+ * */
+@Component
+@ConditionalOnProperty(name = "querydsl.name-search", havingValue = "ngram")
+public class NgramMemberNameSearch implements MemberNameSearch {
+
+    private static final int GRAM = 3;
+
+    private final int maxCandidates;
+    private volatile Index current = new Index();
+    private volatile boolean ready;
+    //reload 중 DB를 읽는 동안의 변경 기록(memberId -> 변경 후 이름, 삭제는 null)
+    private final ReloadRecorder<Long, String> reloadRecorder = new ReloadRecorder<>(this);
+
+    public NgramMemberNameSearch(@Value("${querydsl.name-search.max-candidates:1000}") int maxCandidates) {
+        this.maxCandidates = maxCandidates;
+    }
+
+    @Override
+    public Set<Long> findIdsContaining(String nameCond) {
+        if (!ready || nameCond.length() < GRAM) {
+            return null;
+        }
+
+        Index index = current;
+        List<Set<Long>> candidates = new ArrayList<>();
+        for (String gram : grams(nameCond)) {
+            Set<Long> ids = index.postings.get(gram);
+            if (ids == null) {
+                return Collections.emptySet();
+            }
+            candidates.add(ids);
+        }
+        candidates.sort(Comparator.comparingInt(Set::size));
+
+        Set<Long> result = new HashSet<>();
+        for (Long id : candidates.get(0)) {
+            String name = index.names.get(id);
+            if (name != null && name.contains(nameCond)) {
+                result.add(id);
+                if (result.size() > maxCandidates) {
+                    return null;
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean isIndexed(Long memberId, String name) {
+        return name != null && name.equals(current.names.get(memberId));
+    }
+
+    @Override
+    public synchronized void index(Long memberId, String name) {
+        put(current, memberId, name);
+        reloadRecorder.record(memberId, name);
+    }
+
+    @Override
+    public synchronized void remove(Long memberId) {
+        put(current, memberId, null);
+        reloadRecorder.record(memberId, null);
+    }
+
+    /**loader로 DB에서 전체 회원 이름(memberId -> 이름)을 다시 읽어 교체한다.
+     * 읽는 동안 커밋되어 index, remove로 들어온 변경은 읽은 결과에 없을 수 있으므로 기록해 두었다가 새 색인에 다시 반영한 뒤 교체한다.
+     * 새 색인을 다 만든 뒤 바꾸므로 조회는 이전 색인이나 새 색인 중 하나를 본다.
+     * */
+    public void reload(Supplier<? extends Map<Long, String>> loader) {
+        reloadRecorder.reload(loader, (loaded, changes) -> {
+            Index replaced = new Index();
+            loaded.forEach((memberId, name) -> put(replaced, memberId, name));
+            changes.forEach((memberId, name) -> put(replaced, memberId, name));
+            current = replaced;
+            ready = true;
+        });
+    }
+
+    /**시작시 전체 회원 색인이 끝나면 호출, 그 전에는 like를 사용한다.*/
+    public void markReady() {
+        ready = true;
+    }
+
+    public int size() {
+        return current.names.size();
+    }
+
+    /**memberId의 이름을 name으로 바꾸고 gram 목록을 고친다. name이 null이면 지운다.*/
+    private static void put(Index target, Long memberId, String name) {
+        String previous = name != null ? target.names.put(memberId, name) : target.names.remove(memberId);
+        if (Objects.equals(previous, name)) {
+            return;
+        }
+        if (previous != null) {
+            for (String gram : grams(previous)) {
+                target.postings.computeIfPresent(gram, (key, ids) -> {
+                    ids.remove(memberId);
+                    return ids.isEmpty() ? null : ids;
+                });
+            }
+        }
+        if (name != null) {
+            for (String gram : grams(name)) {
+                target.postings.computeIfAbsent(gram, key -> ConcurrentHashMap.newKeySet()).add(memberId);
+            }
+        }
+    }
+
+    private static Set<String> grams(String value) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= value.length(); i++) {
+            grams.add(value.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+
+    private static class Index {
+
+        private final Map<String, Set<Long>> postings = new ConcurrentHashMap<>();
+        private final Map<Long, String> names = new ConcurrentHashMap<>();
+    }
+}
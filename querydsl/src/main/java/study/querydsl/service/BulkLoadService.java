@@ -0,0 +1,86 @@
+package study.querydsl.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Post;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.List;
+
+/**대량 데이터 적재
+ * Init처럼 한 건씩 persist 하면 insert 마다 DB를 왕복한다.
+ * 1. 시퀀스를 allocationSize 만큼 미리 할당(pooled)해서 시퀀스 호출을 줄인다.
+ * 2. hibernate.jdbc.batch_size 만큼 모아서 JDBC batch insert 로 보낸다.
+ * 3. batch_size 마다 flush, clear 해서 영속성 컨텍스트가 계속 커지지 않게 한다.
+ * 4. chunkSize 명의 회원마다 트랜잭션을 나눠 하나의 트랜잭션이 너무 커지지 않게 한다.
+ * */
+@Slf4j
+@Service
+public class BulkLoadService {
+
+    @PersistenceContext
+    EntityManager em;
+
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+
+    public BulkLoadService(PlatformTransactionManager transactionManager,
+                           @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:100}") int batchSize) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+    }
+
+    /**회원 memberCount 명과 회원마다 게시물 postsPerMember 개를 적재하고 적재한 row 수를 반환한다.*/
+    public long seed(int memberCount, int postsPerMember, int chunkSize) {
+        long start = System.nanoTime();
+        long rows = 0;
+        for (int from = 0; from < memberCount; from += chunkSize) {
+            int to = Math.min(from + chunkSize, memberCount);
+            int chunkFrom = from;
+            rows += transactionTemplate.execute(status -> insertMembers(chunkFrom, to, postsPerMember));
+            log.info("seed progress members = {}/{}, rows = {}", to, memberCount, rows);
+        }
+
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        log.info("seed finished rows = {}, elapsed = {}s, rows/sec = {}",
+                rows, String.format("%.2f", seconds), Math.round(rows / Math.max(seconds, 0.001)));
+        return rows;
+    }
+
+    /**회원을 게시물과 함께 만든 뒤 persist 한다.
+     * 게시물을 먼저 연결해두면 postCount가 채워진 상태로 insert 되므로 회원 update가 나가지 않는다.
+     * */
+    private long insertMembers(int fromIndex, int toIndex, int postsPerMember) {
+        long rows = 0;
+        long pending = 0;
+        for (int i = fromIndex; i < toIndex; i++) {
+            Member member = new Member("member" + i, 20 + i % 50);
+            List<Post> posts = new ArrayList<>(postsPerMember);
+            for (int j = 0; j < postsPerMember; j++) {
+                posts.add(new Post("post" + i + "-" + j, member));
+            }
+
+            em.persist(member);
+            for (Post post : posts) {
+                em.persist(post);
+            }
+            rows += 1 + postsPerMember;
+            pending += 1 + postsPerMember;
+
+            if (pending >= batchSize) {
+                em.flush();
+                em.clear();
+                pending = 0;
+            }
+        }
+        em.flush();
+        em.clear();
+        return rows;
+    }
+}
@@ -0,0 +1,242 @@
+package study.querydsl.service;
+
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.EntityPathBase;
+import com.querydsl.core.types.dsl.NumberPath;
+import com.querydsl.jpa.JPAExpressions;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.querydsl.jpa.impl.JPAUpdateClause;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.engine.spi.PersistenceContext;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Post;
+import study.querydsl.repository.MemberCountCache;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QPost.post;
+
+/**대량 수정, 삭제
+ * 테스트13처럼 bulk 연산 후 em.flush, em.clear로 영속성 컨텍스트 전체를 비우지 않도록
+ * 1. 대상 id를 chunkSize 만큼 id 순서로 조회(No Offset)해서 chunk마다 새 트랜잭션(REQUIRES_NEW)에서 실행하고 커밋한다.
+ *    호출한 쪽에 트랜잭션이 있어도 chunk마다 커밋되므로 락과 undo 로그가 커지지 않는다.
+ * 2. chunk가 커밋되면 호출한 쪽의 영속성 컨텍스트(트랜잭션 또는 OSIV)에 있는 해당 엔티티만 refresh(수정) 또는 detach(삭제)한다.
+ *    호출한 쪽에 영속성 컨텍스트가 없으면 맞출 엔티티가 없으므로 아무것도 하지 않는다.
+ * 3. 게시물 삭제시 작성자의 반정규화된 postCount를 다시 계산한다.
+ * 4. Count 캐시를 무효화하고 MembersBulkChangedEvent를 발행한다. 둘 다 chunk가 커밋된 후 반영된다.
+ * 2차 캐시와 쿼리 결과 캐시는 하이버네이트가 bulk 연산 대상 테이블 단위로 무효화한다.
+ * chunk는 별도 커넥션에서 실행되므로 호출한 쪽 트랜잭션의 커밋되지 않은 변경은 보이지 않고,
+ * 호출한 쪽 트랜잭션이 대상 row를 먼저 수정했다면 chunk가 그 락을 기다리게 되므로 수정 전에 커밋해야 한다.
+ * refresh는 호출한 쪽에서 아직 flush 하지 않은 해당 엔티티의 변경을 덮어쓴다.
+ * */
+@Slf4j
+@Service
+public class BulkOperationService {
+
+    private final EntityManagerFactory emf;
+    private final JPAQueryFactory queryFactory;
+    private final TransactionTemplate transactionTemplate;
+    private final MemberCountCache countCache;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public BulkOperationService(EntityManager em, EntityManagerFactory emf, PlatformTransactionManager transactionManager,
+                                MemberCountCache countCache, ApplicationEventPublisher eventPublisher) {
+        this.emf = emf;
+        this.queryFactory = new JPAQueryFactory(em);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.countCache = countCache;
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**where 조건의 회원을 setter로 수정하고 수정된 회원 수를 반환한다.
+     * 예) updateMembers(member.age.lt(30), update -> update.set(member.age, member.age.add(1)), 1000, listener)
+     * */
+    public long updateMembers(Predicate where, Consumer<JPAUpdateClause> setter, int chunkSize, BulkProgressListener listener) {
+        return inChunks("updateMembers", member, member.id, where, chunkSize, listener, (memberIds, changes) -> {
+            JPAUpdateClause update = queryFactory.update(member);
+            setter.accept(update);
+            long rows = update.set(member.version, member.version.add(1))
+                    .where(member.id.in(memberIds))
+                    .execute();
+
+            changes.refresh(Member.class, memberIds);
+            membersChanged(memberIds, false);
+            return rows;
+        });
+    }
+
+    /**where 조건의 게시물을 삭제하고 삭제된 게시물 수를 반환한다.*/
+    public long deletePosts(Predicate where, int chunkSize, BulkProgressListener listener) {
+        return inChunks("deletePosts", post, post.id, where, chunkSize, listener, (postIds, changes) -> {
+            List<Long> memberIds = queryFactory.select(post.member.id).distinct()
+                    .from(post)
+                    .where(post.id.in(postIds))
+                    .fetch();
+
+            long rows = queryFactory.delete(post).where(post.id.in(postIds)).execute();
+            if (!memberIds.isEmpty()) {
+                queryFactory.update(member)
+                        .set(member.postCount, JPAExpressions.select(post.count().intValue()).from(post).where(post.member.eq(member)))
+                        .set(member.version, member.version.add(1))
+                        .where(member.id.in(memberIds))
+                        .execute();
+            }
+
+            changes.detach(Post.class, postIds);
+            changes.refresh(Member.class, memberIds);
+            membersChanged(memberIds, false);
+            return rows;
+        });
+    }
+
+    /**where 조건의 회원을 게시물과 함께 삭제하고 삭제된 회원 수를 반환한다.*/
+    public long deleteMembers(Predicate where, int chunkSize, BulkProgressListener listener) {
+        return inChunks("deleteMembers", member, member.id, where, chunkSize, listener, (memberIds, changes) -> {
+            List<Long> postIds = queryFactory.select(post.id)
+                    .from(post)
+                    .where(post.member.id.in(memberIds))
+                    .fetch();
+
+            if (!postIds.isEmpty()) {
+                queryFactory.delete(post).where(post.id.in(postIds)).execute();
+            }
+            long rows = queryFactory.delete(member).where(member.id.in(memberIds)).execute();
+
+            changes.detach(Post.class, postIds);
+            changes.detach(Member.class, memberIds);
+            membersChanged(memberIds, true);
+            return rows;
+        });
+    }
+
+    /**id 순서로 chunkSize 개씩 잘라 chunk마다 새 트랜잭션에서 실행하고 커밋 후 호출한 쪽의 영속성 컨텍스트를 맞춘다.*/
+    private long inChunks(String operation, EntityPathBase<?> entity, NumberPath<Long> id, Predicate where,
+                          int chunkSize, BulkProgressListener listener, ChunkOperation chunkOperation) {
+        long start = System.nanoTime();
+        long processed = 0;
+        Long lastId = null;
+        while (true) {
+            Long fromId = lastId;
+            Chunk chunk = transactionTemplate.execute(status -> {
+                List<Long> ids = queryFactory.select(id)
+                        .from(entity)
+                        .where(where, fromId != null ? id.gt(fromId) : null)
+                        .orderBy(id.asc())
+                        .limit(chunkSize)
+                        .fetch();
+                if (ids.isEmpty()) {
+                    return null;
+                }
+                Changes changes = new Changes();
+                long rows = chunkOperation.apply(ids, changes);
+                return new Chunk(ids.get(ids.size() - 1), rows, changes);
+            });
+            if (chunk == null) {
+                break;
+            }
+
+            synchronize(chunk.changes);
+
+            lastId = chunk.lastId;
+            processed += chunk.rows;
+            listener.onChunk(operation, processed, chunk.rows);
+            log.info("{} progress rows = {}, lastId = {}", operation, processed, lastId);
+        }
+
+        log.info("{} finished rows = {}, elapsed = {}ms", operation, processed, (System.nanoTime() - start) / 1_000_000);
+        return processed;
+    }
+
+    /**호출한 쪽의 영속성 컨텍스트에 있는 엔티티만 DB 상태로 맞춘다. 없는 엔티티는 다음 조회 때 DB에서 읽는다.
+     * chunk 트랜잭션이 끝난 뒤 호출하므로 트랜잭션이나 OSIV로 묶인 EntityManager가 없으면 맞출 대상도 없다.
+     * */
+    private void synchronize(Changes changes) {
+        EntityManager callerEm = EntityManagerFactoryUtils.getTransactionalEntityManager(emf);
+        if (callerEm == null) {
+            return;
+        }
+        SessionImplementor session = callerEm.unwrap(SessionImplementor.class);
+        PersistenceContext persistenceContext = session.getPersistenceContext();
+        for (Change change : changes.list) {
+            EntityPersister persister = session.getFactory().getMetamodel().entityPersister(change.entityClass);
+            for (Long id : change.ids) {
+                Object entity = persistenceContext.getEntity(session.generateEntityKey(id, persister));
+                if (entity == null) {
+                    continue;
+                }
+                if (change.removed) {
+                    callerEm.detach(entity);
+                } else {
+                    callerEm.refresh(entity);
+                }
+            }
+        }
+    }
+
+    private void membersChanged(List<Long> memberIds, boolean removed) {
+        if (memberIds.isEmpty()) {
+            return;
+        }
+        //bulk 연산은 엔티티 리스너를 거치지 않으므로 Count 캐시도 직접 무효화한다. chunk 트랜잭션이 커밋된 후 무효화된다.
+        countCache.invalidateAfterCommit();
+        eventPublisher.publishEvent(new MembersBulkChangedEvent(memberIds, removed));
+    }
+
+    private interface ChunkOperation {
+        long apply(List<Long> ids, Changes changes);
+    }
+
+    /**chunk 커밋 후 호출한 쪽의 영속성 컨텍스트에서 refresh, detach 할 엔티티*/
+    private static class Changes {
+
+        private final List<Change> list = new ArrayList<>();
+
+        void refresh(Class<?> entityClass, List<Long> ids) {
+            list.add(new Change(entityClass, ids, false));
+        }
+
+        void detach(Class<?> entityClass, List<Long> ids) {
+            list.add(new Change(entityClass, ids, true));
+        }
+    }
+
+    private static class Change {
+
+        private final Class<?> entityClass;
+        private final List<Long> ids;
+        private final boolean removed;
+
+        private Change(Class<?> entityClass, List<Long> ids, boolean removed) {
+            this.entityClass = entityClass;
+            this.ids = ids;
+            this.removed = removed;
+        }
+    }
+
+    private static class Chunk {
+
+        private final Long lastId;
+        private final long rows;
+        private final Changes changes;
+
+        private Chunk(Long lastId, long rows, Changes changes) {
+            this.lastId = lastId;
+            this.rows = rows;
+            this.changes = changes;
+        }
+    }
+}
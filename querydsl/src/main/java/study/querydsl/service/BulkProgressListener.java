@@ -0,0 +1,11 @@
+package study.querydsl.service;
+
+/**bulk 연산 진행 상황, chunk가 커밋될 때마다 호출된다.*/
+@FunctionalInterface
+public interface BulkProgressListener {
+
+    BulkProgressListener NONE = (operation, processedRows, chunkRows) -> {
+    };
+
+    void onChunk(String operation, long processedRows, long chunkRows);
+}
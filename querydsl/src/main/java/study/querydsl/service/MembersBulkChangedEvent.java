@@ -0,0 +1,17 @@
+package study.querydsl.service;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+
+/**bulk 연산으로 변경, 삭제된 회원
+ * bulk 연산은 엔티티 리스너를 거치지 않으므로 회원 정보를 메모리에 들고 있는 컴포넌트는 이 이벤트로 갱신한다.
+ * */
+@Getter
+@RequiredArgsConstructor
+public class MembersBulkChangedEvent {
+
+    private final List<Long> memberIds;
+    private final boolean removed;
+}
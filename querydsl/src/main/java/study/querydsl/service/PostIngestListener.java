@@ -0,0 +1,24 @@
+package study.querydsl.service;
+
+import org.hibernate.Hibernate;
+import study.querydsl.entity.Member;
+
+/**게시물 대량 작성 측정
+ * flush 직전 영속성 컨텍스트의 엔티티 수와 flush 시간, 마지막 flush 후 회원의 게시물 컬렉션 초기화 여부를 받는다.
+ * */
+public interface PostIngestListener {
+
+    PostIngestListener NONE = new PostIngestListener() {
+    };
+
+    default void onFlush(int managedEntities, long flushNanos) {
+    }
+
+    default void onFinished(boolean postsInitialized) {
+    }
+
+    /**프록시가 초기화되지 않았으면 게시물 컬렉션도 초기화되지 않았다.*/
+    static boolean isPostsInitialized(Member member) {
+        return Hibernate.isInitialized(member) && Hibernate.isInitialized(member.getPosts());
+    }
+}
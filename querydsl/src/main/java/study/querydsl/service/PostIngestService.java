@@ -0,0 +1,95 @@
+package study.querydsl.service;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Post;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityNotFoundException;
+import java.util.List;
+
+import static study.querydsl.entity.QMember.member;
+
+/**한 회원의 게시물 대량 작성
+ * new Post(title, member)는 addMember에서 member.getPosts().add()를 호출하므로
+ * 게시물 수만큼 컬렉션이 커지고 flush 때마다 컬렉션 변경 감지 비용도 게시물 수에 비례한다.
+ * 1. 회원은 getReference 프록시로 참조만 하고 Post.ofOwner로 Post.member만 설정해 컬렉션을 초기화하지 않는다.
+ * 2. hibernate.jdbc.batch_size 마다 flush, clear 해서 영속성 컨텍스트 크기를 batch_size 이하로 유지한다.
+ * 3. 게시물 수는 마지막에 update 한 번으로 원자적으로 증가시키고 version도 올린다.
+ *    update는 엔티티 리스너를 거치지 않으므로 MembersBulkChangedEvent를 발행한다.
+ * 영속성 컨텍스트를 비우므로 엔티티를 들고 있는 트랜잭션 안에서 호출하지 않는다.
+ * */
+@Slf4j
+@Service
+public class PostIngestService {
+
+    private final EntityManager em;
+    private final JPAQueryFactory queryFactory;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int batchSize;
+
+    public PostIngestService(EntityManager em, PlatformTransactionManager transactionManager,
+                             ApplicationEventPublisher eventPublisher,
+                             @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:100}") int batchSize) {
+        this.em = em;
+        this.queryFactory = new JPAQueryFactory(em);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.batchSize = batchSize;
+    }
+
+    /**memberId 회원의 게시물을 titles 만큼 작성하고 작성한 게시물 수를 반환한다.*/
+    public long ingest(Long memberId, List<String> titles) {
+        return ingest(memberId, titles, PostIngestListener.NONE);
+    }
+
+    public long ingest(Long memberId, List<String> titles, PostIngestListener listener) {
+        long start = System.nanoTime();
+        long rows = transactionTemplate.execute(status -> {
+            Member owner = em.getReference(Member.class, memberId);
+            int pending = 0;
+            for (String title : titles) {
+                em.persist(Post.ofOwner(title, owner));
+                if (++pending >= batchSize) {
+                    flush(listener);
+                    em.clear();
+                    //clear 후에는 프록시도 준영속이므로 다시 참조한다.
+                    owner = em.getReference(Member.class, memberId);
+                    pending = 0;
+                }
+            }
+            flush(listener);
+            listener.onFinished(PostIngestListener.isPostsInitialized(owner));
+            em.clear();
+
+            long updated = queryFactory.update(member)
+                    .set(member.postCount, member.postCount.add(titles.size()))
+                    .set(member.version, member.version.add(1))
+                    .where(member.id.eq(memberId))
+                    .execute();
+            if (updated == 0) {
+                throw new EntityNotFoundException("member not found id = " + memberId);
+            }
+            eventPublisher.publishEvent(new MembersBulkChangedEvent(List.of(memberId), false));
+            return (long) titles.size();
+        });
+
+        log.info("ingest finished memberId = {}, posts = {}, elapsed = {}ms", memberId, rows, (System.nanoTime() - start) / 1_000_000);
+        return rows;
+    }
+
+    private void flush(PostIngestListener listener) {
+        int managed = em.unwrap(SessionImplementor.class).getPersistenceContext().getNumberOfManagedEntities();
+        long start = System.nanoTime();
+        em.flush();
+        listener.onFlush(managed, System.nanoTime() - start);
+    }
+}
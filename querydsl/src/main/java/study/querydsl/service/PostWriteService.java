@@ -0,0 +1,91 @@
+package study.querydsl.service;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Post;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityNotFoundException;
+import javax.persistence.PersistenceUnitUtil;
+import java.util.List;
+
+import static study.querydsl.entity.QMember.member;
+
+/**게시물 작성, 작성자 변경
+ * Post.addMember로 작성자 엔티티의 게시물 수를 바꾸면 version 검사를 하므로 인기 있는 회원에게 동시에 쓰면 충돌하고 재시도해야 한다.
+ * 작성자를 읽지 않고 getReference로 참조만 하고, 게시물 수는 update 한 번으로 원자적으로 증감한다. (PostIngestService와 같은 방식)
+ * 동시에 쓰는 트랜잭션은 회원 row 락을 잠깐 기다릴 뿐 충돌하지 않는다.
+ * version도 함께 올리므로 게시물 수를 읽고 있던 엔티티 수정은 실패하고 커밋 후 콜백은 version으로 순서를 맞춘다.
+ * update는 엔티티 리스너를 거치지 않으므로 MembersBulkChangedEvent를 발행한다.
+ * update는 영속성 컨텍스트의 회원을 바꾸지 않으므로 항상 새 트랜잭션(REQUIRES_NEW)에서 실행한다.
+ * */
+@Service
+public class PostWriteService {
+
+    private final EntityManager em;
+    private final JPAQueryFactory queryFactory;
+    private final PersistenceUnitUtil persistenceUnitUtil;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public PostWriteService(EntityManager em, PlatformTransactionManager transactionManager,
+                            ApplicationEventPublisher eventPublisher) {
+        this.em = em;
+        this.queryFactory = new JPAQueryFactory(em);
+        this.persistenceUnitUtil = em.getEntityManagerFactory().getPersistenceUnitUtil();
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**게시물을 작성하고 게시물 id를 반환한다.*/
+    public Long write(Long memberId, String title) {
+        return transactionTemplate.execute(status -> {
+            addPostCount(memberId, 1);
+            Post post = Post.ofOwner(title, em.getReference(Member.class, memberId));
+            em.persist(post);
+            eventPublisher.publishEvent(new MembersBulkChangedEvent(List.of(memberId), false));
+            return post.getId();
+        });
+    }
+
+    public void changeMember(Long postId, Long memberId) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Post post = em.find(Post.class, postId);
+            if (post == null) {
+                throw new EntityNotFoundException("post not found id = " + postId);
+            }
+            //프록시를 초기화하지 않고 id를 꺼낸다.
+            Long previousId = (Long) persistenceUnitUtil.getIdentifier(post.getMember());
+            if (previousId.equals(memberId)) {
+                return;
+            }
+            //두 작성자를 동시에 바꾸는 트랜잭션끼리 교착되지 않도록 id 순서로 update 한다.
+            if (previousId < memberId) {
+                addPostCount(previousId, -1);
+                addPostCount(memberId, 1);
+            } else {
+                addPostCount(memberId, 1);
+                addPostCount(previousId, -1);
+            }
+            post.setMember(em.getReference(Member.class, memberId));
+            eventPublisher.publishEvent(new MembersBulkChangedEvent(List.of(previousId, memberId), false));
+        });
+    }
+
+    private void addPostCount(Long memberId, int delta) {
+        long updated = queryFactory.update(member)
+                .set(member.postCount, member.postCount.add(delta))
+                .set(member.version, member.version.add(1))
+                .where(member.id.eq(memberId))
+                .execute();
+        if (updated == 0) {
+            throw new EntityNotFoundException("member not found id = " + memberId);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package study.querydsl.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import study.querydsl.dto.MemberPostDto;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.repository.MemberRepository;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+/**논블로킹 회원 검색
+ * JPA는 블로킹이므로 서블릿 스레드 대신 검색 전용 스케줄러(boundedElastic)에서 실행한다.
+ * 스케줄러의 스레드 수와 대기 작업 수를 제한하고 대기열이 가득 차면 503으로 응답한다.
+ * Flux 검색은 커서 페이징으로 sliceSize 만큼씩 조회하므로 구독자가 요청한 만큼만 DB에서 읽는다(backpressure).
+ * concatMapIterable의 기본 prefetch(256)는 slice를 256개까지 미리 요청하므로 prefetch를 1로 줄여
+ * 구독자가 요청한 회원이 들어있는 slice와 다음 slice 하나까지만 조회한다.
+ * */
+@Service
+public class ReactiveMemberSearchService {
+
+    private final MemberRepository memberRepository;
+    private final Scheduler scheduler;
+    private final Duration timeout;
+    private final int sliceSize;
+
+    public ReactiveMemberSearchService(MemberRepository memberRepository,
+                                       @Value("${querydsl.reactive.thread-cap:20}") int threadCap,
+                                       @Value("${querydsl.reactive.queued-task-cap:1000}") int queuedTaskCap,
+                                       @Value("${querydsl.reactive.timeout:5s}") Duration timeout,
+                                       @Value("${querydsl.reactive.slice-size:100}") int sliceSize) {
+        this.memberRepository = memberRepository;
+        this.scheduler = Schedulers.newBoundedElastic(threadCap, queuedTaskCap, "member-search");
+        this.timeout = timeout;
+        this.sliceSize = sliceSize;
+    }
+
+    public Mono<Page<MemberPostDto>> searchPage(MemberSearchCondition condition, Pageable pageable) {
+        return onSearchScheduler(Mono.fromCallable(() -> memberRepository.searchPageComplex(condition, pageable)))
+                .timeout(timeout);
+    }
+
+    /**조건에 맞는 모든 회원, timeout은 다음 회원이 나올때까지 기다리는 최대 시간이다.*/
+    public Flux<MemberPostDto> search(MemberSearchCondition condition) {
+        return fetchSlice(condition, null)
+                .expand(slice -> slice.hasNext() ? fetchSlice(condition, lastMemberId(slice)) : Mono.empty())
+                .concatMapIterable(Slice::getContent, 1)
+                .timeout(timeout);
+    }
+
+    private Mono<Slice<MemberPostDto>> fetchSlice(MemberSearchCondition condition, Long lastMemberId) {
+        return onSearchScheduler(Mono.fromCallable(
+                () -> memberRepository.searchSliceByCursor(condition, lastMemberId, sliceSize)));
+    }
+
+    private <T> Mono<T> onSearchScheduler(Mono<T> search) {
+        return search.subscribeOn(scheduler)
+                .onErrorMap(RejectedExecutionException.class,
+                        e -> new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "member search is overloaded", e));
+    }
+
+    private Long lastMemberId(Slice<MemberPostDto> slice) {
+        List<MemberPostDto> content = slice.getContent();
+        return content.get(content.size() - 1).getMemberId();
+    }
+
+    @PreDestroy
+    public void dispose() {
+        scheduler.dispose();
+    }
+}
@@ -0,0 +1,191 @@
+package study.querydsl.service.agestats;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.MemberAgeStats;
+import study.querydsl.support.ReloadRecorder;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+/**회원 나이 통계 메모리 집계
+ * QueryDSLTest.test5의 count, sum, avg, max, min과 테스트10의 max, avg 서브쿼리는 매번 회원 전체를 읽는다.
+ * 회원 id → 나이와 나이별 회원 수를 들고 있다가 회원이 바뀔 때마다 해당 회원만 반영하고
+ * 통계는 갱신 시점에 미리 계산해두므로 조회는 O(1)이다.
+ * 1. 시작시 회원 전체의 id, 나이로 채운다. (MemberAgeStatsLoader)
+ * 2. 회원 저장, 나이 변경, 삭제는 커밋 후 MemberAgeStatsListener가 반영한다.
+ * 3. bulk 연산은 MembersBulkChangedEvent로 해당 회원만 다시 읽는다.
+ * 회원마다 나이를 읽은 version을 두고 그보다 오래된 갱신은 버린다.
+ * 다시 읽는 동안(reload) 커밋된 변경은 기록해 두었다가 교체 후 다시 반영하고,
+ * DB 집계와 비교할 때는 세대 번호(generation)로 비교하는 동안 변경이 있었는지 확인한다.
+ * */
+@Component
+public class MemberAgeStatistics {
+
+    private final int bucketSize;
+    private final Map<Long, Integer> ages = new HashMap<>();
+    //회원 id -> 나이를 읽은 version, 늦게 도착한 오래된 나이를 버릴 때 비교한다.
+    private final Map<Long, Long> versions = new HashMap<>();
+    //삭제된 회원 id, 다음 교체 때 비워진다.
+    private final Set<Long> removed = new HashSet<>();
+    private final TreeMap<Integer, Long> countByAge = new TreeMap<>();
+    private long sum;
+    //update, remove 마다 증가
+    private long generation;
+    //reload 중 DB를 읽는 동안의 변경 기록(memberId -> 변경 후 항목, 삭제는 null)
+    private final ReloadRecorder<Long, Entry> reloadRecorder = new ReloadRecorder<>(this);
+    private volatile MemberAgeStats snapshot;
+    private volatile boolean ready;
+
+    public MemberAgeStatistics(@Value("${querydsl.age-stats.bucket-size:10}") int bucketSize) {
+        this.bucketSize = bucketSize;
+        this.snapshot = buildSnapshot();
+    }
+
+    public MemberAgeStats get() {
+        return snapshot;
+    }
+
+    public void update(Long memberId, int age, long version) {
+        update(new Entry(memberId, age, version));
+    }
+
+    /**커밋 후 콜백은 트랜잭션끼리 순서가 바뀔 수 있으므로 지금 나이보다 오래된 version이면 버린다.*/
+    public synchronized void update(Entry entry) {
+        generation++;
+        reloadRecorder.record(entry.memberId, entry);
+        if (apply(entry)) {
+            snapshot = buildSnapshot();
+        }
+    }
+
+    /**삭제된 회원 id는 다시 쓰이지 않으므로 삭제 후에 도착한 갱신도 버린다.*/
+    public synchronized void remove(Long memberId) {
+        generation++;
+        reloadRecorder.record(memberId, null);
+        if (delete(memberId)) {
+            snapshot = buildSnapshot();
+        }
+    }
+
+    /**회원 전체의 id, 나이로 다시 채운다.*/
+    public synchronized void replaceAll(Collection<Entry> entries) {
+        clear();
+        entries.forEach(this::apply);
+        snapshot = buildSnapshot();
+        ready = true;
+    }
+
+    /**loader로 회원 전체의 id, 나이를 다시 읽어 교체한다.
+     * 읽는 동안 update, remove로 들어온 변경은 읽은 결과에 없을 수 있으므로 교체할 때 version을 비교해 다시 반영한다.
+     * */
+    public void reload(Supplier<? extends Collection<Entry>> loader) {
+        reloadRecorder.reload(loader, (entries, changes) -> {
+            clear();
+            entries.forEach(this::apply);
+            changes.forEach((memberId, entry) -> {
+                if (entry == null) {
+                    delete(memberId);
+                } else {
+                    apply(entry);
+                }
+            });
+            snapshot = buildSnapshot();
+            ready = true;
+        });
+    }
+
+    public synchronized long generation() {
+        return generation;
+    }
+
+    /**generation 이후 변경이 없으면 통계를, 있으면 null을 반환한다.*/
+    public synchronized MemberAgeStats getIfUnchanged(long generation) {
+        return this.generation == generation ? snapshot : null;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int getBucketSize() {
+        return bucketSize;
+    }
+
+    private boolean apply(Entry entry) {
+        Long previousVersion = versions.get(entry.memberId);
+        if (removed.contains(entry.memberId) || previousVersion != null && previousVersion > entry.version) {
+            return false;
+        }
+        versions.put(entry.memberId, entry.version);
+        Integer previous = ages.put(entry.memberId, entry.age);
+        if (previous != null) {
+            if (previous == entry.age) {
+                return false;
+            }
+            decrement(previous);
+        }
+        increment(entry.age);
+        return true;
+    }
+
+    private boolean delete(Long memberId) {
+        removed.add(memberId);
+        versions.remove(memberId);
+        Integer previous = ages.remove(memberId);
+        if (previous == null) {
+            return false;
+        }
+        decrement(previous);
+        return true;
+    }
+
+    private void clear() {
+        ages.clear();
+        versions.clear();
+        removed.clear();
+        countByAge.clear();
+        sum = 0;
+    }
+
+    private void increment(int age) {
+        countByAge.merge(age, 1L, Long::sum);
+        sum += age;
+    }
+
+    private void decrement(int age) {
+        countByAge.computeIfPresent(age, (key, count) -> count == 1 ? null : count - 1);
+        sum -= age;
+    }
+
+    /**나이 종류 수(최대 100여 개)만큼만 순회한다.*/
+    private MemberAgeStats buildSnapshot() {
+        SortedMap<Integer, Long> buckets = new TreeMap<>();
+        countByAge.forEach((age, count) -> buckets.merge(Math.floorDiv(age, bucketSize) * bucketSize, count, Long::sum));
+        return new MemberAgeStats(ages.size(), sum,
+                countByAge.isEmpty() ? null : countByAge.firstKey(),
+                countByAge.isEmpty() ? null : countByAge.lastKey(),
+                Collections.unmodifiableSortedMap(buckets));
+    }
+
+    /**회원 id, 나이와 그 값을 읽은 회원의 version*/
+    public static class Entry {
+
+        private final Long memberId;
+        private final int age;
+        private final long version;
+
+        public Entry(Long memberId, int age, long version) {
+            this.memberId = memberId;
+            this.age = age;
+            this.version = version;
+        }
+    }
+}
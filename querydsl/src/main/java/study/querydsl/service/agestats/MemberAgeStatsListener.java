@@ -0,0 +1,35 @@
+package study.querydsl.service.agestats;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import study.querydsl.entity.Member;
+import study.querydsl.support.AfterCommit;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+/**Member 저장, 나이 변경, 삭제를 커밋 후 나이 통계에 반영
+ * 커밋 후 콜백은 트랜잭션끼리 순서가 바뀔 수 있으므로 flush 시점의 version을 함께 넘긴다.
+ * */
+@Component
+@RequiredArgsConstructor
+public class MemberAgeStatsListener {
+
+    private final MemberAgeStatistics memberAgeStatistics;
+
+    @PostPersist
+    @PostUpdate
+    public void update(Member member) {
+        Long memberId = member.getId();
+        int age = member.getAge();
+        long version = member.getVersion();
+        AfterCommit.run(() -> memberAgeStatistics.update(memberId, age, version));
+    }
+
+    @PostRemove
+    public void remove(Member member) {
+        Long memberId = member.getId();
+        AfterCommit.run(() -> memberAgeStatistics.remove(memberId));
+    }
+}
@@ -0,0 +1,95 @@
+package study.querydsl.service.agestats;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberAgeStats;
+import study.querydsl.repository.MemberReadRepository;
+import study.querydsl.service.MembersBulkChangedEvent;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+
+import static study.querydsl.entity.QMember.member;
+
+/**나이 통계 적재, 갱신, 정합성 확인
+ * querydsl.age-stats.verify-interval 마다 DB 집계(MemberReadRepository.ageStatsLive)와 비교해 다르면 다시 적재한다.
+ * 다시 적재, 비교할 때의 DB 읽기는 새 readOnly 트랜잭션(REQUIRES_NEW)에서 실행하므로
+ * 호출한 쪽 트랜잭션의 커밋되지 않은 변경(롤백될 수 있는 회원)이 통계에 들어가지 않는다.
+ * */
+@Slf4j
+@Component
+public class MemberAgeStatsLoader {
+
+    private final JPAQueryFactory queryFactory;
+    private final MemberAgeStatistics memberAgeStatistics;
+    private final MemberReadRepository memberReadRepository;
+    private final TransactionTemplate readOnlyTransaction;
+
+    public MemberAgeStatsLoader(EntityManager em, MemberAgeStatistics memberAgeStatistics,
+                                MemberReadRepository memberReadRepository, PlatformTransactionManager transactionManager) {
+        this.queryFactory = new JPAQueryFactory(em);
+        this.memberAgeStatistics = memberAgeStatistics;
+        this.memberReadRepository = memberReadRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.readOnlyTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**회원 전체를 다시 읽는다. 직접 실행한 SQL 등으로 회원 나이를 바꾼 뒤에도 호출한다.
+     * 커밋된 회원만 읽으므로 트랜잭션 안에서 SQL로 바꿨다면 커밋한 뒤에 호출해야 반영된다.
+     * */
+    @EventListener(ApplicationReadyEvent.class)
+    public void refresh() {
+        memberAgeStatistics.reload(() -> readOnlyTransaction.execute(status -> loadAges(null)));
+        log.info("age stats loaded members = {}", memberAgeStatistics.get().getCount());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBulkChanged(MembersBulkChangedEvent event) {
+        if (event.isRemoved()) {
+            event.getMemberIds().forEach(memberAgeStatistics::remove);
+            return;
+        }
+        loadAges(member.id.in(event.getMemberIds())).forEach(memberAgeStatistics::update);
+    }
+
+    /**메모리 집계와 DB 집계가 같은지 확인하고 다르면 다시 적재한다.
+     * DB를 읽는 동안 메모리 집계가 바뀌었으면 비교할 수 없으므로 다음 확인으로 넘긴다. 다르다고 확인된 경우에만 false를 반환한다.
+     * */
+    @Scheduled(initialDelayString = "${querydsl.age-stats.verify-interval:600000}",
+            fixedDelayString = "${querydsl.age-stats.verify-interval:600000}")
+    public boolean verify() {
+        long generation = memberAgeStatistics.generation();
+        MemberAgeStats live = readOnlyTransaction.execute(status -> memberReadRepository.ageStatsLive());
+        MemberAgeStats cached = memberAgeStatistics.getIfUnchanged(generation);
+        if (cached == null) {
+            log.info("age stats changed while verifying, skip");
+            return true;
+        }
+        if (live.equals(cached)) {
+            return true;
+        }
+        log.warn("age stats mismatch live = {}, cached = {}", live, cached);
+        refresh();
+        return false;
+    }
+
+    private List<MemberAgeStatistics.Entry> loadAges(Predicate where) {
+        List<MemberAgeStatistics.Entry> ages = new ArrayList<>();
+        for (Tuple tuple : queryFactory.select(member.id, member.age, member.version).from(member).where(where).fetch()) {
+            ages.add(new MemberAgeStatistics.Entry(tuple.get(member.id), tuple.get(member.age), tuple.get(member.version)));
+        }
+        return ages;
+    }
+}
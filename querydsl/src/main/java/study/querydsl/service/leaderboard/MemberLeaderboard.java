@@ -0,0 +1,162 @@
+package study.querydsl.service.leaderboard;
+
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.MemberPostDto;
+import study.querydsl.support.ReloadRecorder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Supplier;
+
+/**게시물 수 상위 회원 순위
+ * QueryDSLTest.test6, test8처럼 post.count()를 group by 하면 조회할 때마다 게시물 전체를 읽는다.
+ * (게시물 수 내림차순, memberId 오름차순)으로 정렬된 skip list에 회원을 두고 앞에서부터 k명을 읽으므로 SQL 없이 조회한다.
+ * 1. 시작시 group by 한 번으로 채운다. (MemberLeaderboardLoader)
+ * 2. 회원 저장, 게시물 수 변경, 삭제는 커밋 후 MemberLeaderboardListener가 한 명씩 반영한다.
+ * 3. 주기적으로 DB에서 다시 집계해 통째로 교체한다. 집계하는 동안 반영된 변경은 교체 후에도 남긴다.
+ * 동시에 커밋된 트랜잭션의 커밋 후 콜백은 순서가 바뀌어 도착할 수 있으므로 항목마다 회원의 version을 두고
+ * 지금 항목보다 오래된 version의 갱신은 버린다.
+ * 조회는 락 없이 skip list를 순회하고, 갱신은 회원 한 명의 기존 항목을 지우고 새 항목을 넣는다.
+ * */
+@Component
+public class MemberLeaderboard {
+
+    private static final Comparator<MemberPostDto> RANKING = Comparator.comparingInt(MemberPostDto::getPostCount).reversed()
+            .thenComparing(MemberPostDto::getMemberId);
+
+    private volatile Board board = new Board();
+    private volatile boolean ready;
+    //reload 중 집계하는 동안의 변경 기록(memberId -> 변경 후 항목, 삭제는 null)
+    private final ReloadRecorder<Long, Entry> reloadRecorder = new ReloadRecorder<>(this);
+
+    /**postCount 내림차순 상위 k명, minAge, maxAge가 null이 아니면 나이 범위로 거른다.
+     * 나이 조건이 있으면 조건에 맞는 k명을 찾을 때까지 순위를 따라 내려간다.
+     * */
+    public List<MemberPostDto> top(int k, Integer minAge, Integer maxAge) {
+        List<MemberPostDto> result = new ArrayList<>(k);
+        for (MemberPostDto entry : board.ranking) {
+            if (result.size() >= k) {
+                break;
+            }
+            if ((minAge == null || entry.getAge() >= minAge) && (maxAge == null || entry.getAge() <= maxAge)) {
+                //순위 항목을 바꾸지 못하도록 복사해서 반환한다.
+                result.add(new MemberPostDto(entry.getMemberId(), entry.getName(), entry.getAge(), entry.getPostCount()));
+            }
+        }
+        return result;
+    }
+
+    public void update(Long memberId, String name, int age, int postCount, long version) {
+        update(new Entry(memberId, name, age, postCount, version));
+    }
+
+    /**지금 항목보다 오래된 version이면 버린다.*/
+    public synchronized void update(Entry entry) {
+        put(board, entry);
+        reloadRecorder.record(entry.getMemberId(), entry);
+    }
+
+    /**삭제된 회원 id는 다시 쓰이지 않으므로 삭제 후에 도착한 갱신도 버린다.*/
+    public synchronized void remove(Long memberId) {
+        delete(board, memberId);
+        reloadRecorder.record(memberId, null);
+    }
+
+    /**DB에서 집계한 결과로 통째로 교체한다. 새 순위를 다 만든 뒤 바꾸므로 조회는 이전 순위나 새 순위 중 하나를 본다.*/
+    public synchronized void replaceAll(Collection<Entry> entries) {
+        board = build(entries);
+        ready = true;
+    }
+
+    /**loader로 DB에서 다시 집계해 교체한다.
+     * 집계하는 동안 커밋되어 update, remove로 들어온 변경은 집계 결과에 없을 수 있으므로 기록해 두었다가 새 순위에 다시 반영한 뒤 교체한다.
+     * 다시 반영할 때도 version을 비교하므로 집계 결과보다 오래된 변경은 버린다.
+     * */
+    public void reload(Supplier<? extends Collection<Entry>> loader) {
+        reloadRecorder.reload(loader, (entries, changes) -> {
+            Board replaced = build(entries);
+            changes.forEach((memberId, entry) -> {
+                if (entry == null) {
+                    delete(replaced, memberId);
+                } else {
+                    put(replaced, entry);
+                }
+            });
+            board = replaced;
+            ready = true;
+        });
+    }
+
+    /**시작시 집계가 끝났는지 여부, 끝나기 전에는 빈 순위를 반환하므로 조회하는 쪽에서 확인한다.*/
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int size() {
+        return board.byId.size();
+    }
+
+    private static Board build(Collection<Entry> entries) {
+        Board built = new Board();
+        for (Entry entry : entries) {
+            put(built, entry);
+        }
+        return built;
+    }
+
+    private static void put(Board target, Entry entry) {
+        Long memberId = entry.getMemberId();
+        if (target.removed.contains(memberId)) {
+            return;
+        }
+        Entry previous = target.byId.get(memberId);
+        if (previous != null) {
+            if (previous.version > entry.version) {
+                return;
+            }
+            target.ranking.remove(previous.member);
+        }
+        target.byId.put(memberId, entry);
+        target.ranking.add(entry.member);
+    }
+
+    private static void delete(Board target, Long memberId) {
+        target.removed.add(memberId);
+        Entry previous = target.byId.remove(memberId);
+        if (previous != null) {
+            target.ranking.remove(previous.member);
+        }
+    }
+
+    /**순위 항목과 그 값을 읽은 회원의 version*/
+    public static class Entry {
+
+        private final MemberPostDto member;
+        private final long version;
+
+        public Entry(Long memberId, String name, int age, int postCount, long version) {
+            this.member = new MemberPostDto(memberId, name, age, postCount);
+            this.version = version;
+        }
+
+        public Long getMemberId() {
+            return member.getMemberId();
+        }
+    }
+
+    private static class Board {
+
+        private final NavigableSet<MemberPostDto> ranking = new ConcurrentSkipListSet<>(RANKING);
+        private final Map<Long, Entry> byId = new ConcurrentHashMap<>();
+        //삭제된 회원 id, 다음 교체 때 DB 집계 결과로 비워진다. 갱신과 같은 락 안에서만 읽고 쓴다.
+        private final Set<Long> removed = new HashSet<>();
+    }
+}
@@ -0,0 +1,39 @@
+package study.querydsl.service.leaderboard;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import study.querydsl.entity.Member;
+import study.querydsl.support.AfterCommit;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+/**Member 저장, 게시물 수 변경, 삭제를 커밋 후 순위에 반영
+ * 엔티티로 게시물을 작성, 삭제하면 Post에서 Member.postCount를 증감하므로 Member의 @PostUpdate로 전달된다.
+ * PostWriteService의 update는 MembersBulkChangedEvent로 MemberLeaderboardLoader가 반영한다.
+ * 커밋 후 콜백은 트랜잭션끼리 순서가 바뀔 수 있으므로 flush 시점의 version을 함께 넘겨 오래된 값이 새 값을 덮어쓰지 않게 한다.
+ * */
+@Component
+@RequiredArgsConstructor
+public class MemberLeaderboardListener {
+
+    private final MemberLeaderboard memberLeaderboard;
+
+    @PostPersist
+    @PostUpdate
+    public void update(Member member) {
+        Long memberId = member.getId();
+        String name = member.getName();
+        int age = member.getAge();
+        int postCount = member.getPostCount();
+        long version = member.getVersion();
+        AfterCommit.run(() -> memberLeaderboard.update(memberId, name, age, postCount, version));
+    }
+
+    @PostRemove
+    public void remove(Member member) {
+        Long memberId = member.getId();
+        AfterCommit.run(() -> memberLeaderboard.remove(memberId));
+    }
+}
@@ -0,0 +1,80 @@
+package study.querydsl.service.leaderboard;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.service.MembersBulkChangedEvent;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QPost.post;
+
+/**순위 적재와 보정
+ * 시작시, 그리고 querydsl.leaderboard.reconcile-interval 마다 회원별 게시물 수를 group by 한 번으로 집계해 순위를 교체한다.
+ * 집계하는 동안 커밋된 변경은 MemberLeaderboard.reload가 교체 후 다시 반영한다.
+ * 집계는 새 readOnly 트랜잭션(REQUIRES_NEW)에서 실행하므로 호출한 쪽 트랜잭션의 커밋되지 않은 변경은 순위에 들어가지 않는다.
+ * 엔티티 리스너를 거치지 않는 bulk 연산은 MembersBulkChangedEvent로 해당 회원만 다시 집계한다.
+ * */
+@Slf4j
+@Component
+public class MemberLeaderboardLoader {
+
+    private final JPAQueryFactory queryFactory;
+    private final MemberLeaderboard memberLeaderboard;
+    private final TransactionTemplate readOnlyTransaction;
+
+    public MemberLeaderboardLoader(EntityManager em, MemberLeaderboard memberLeaderboard,
+                                   PlatformTransactionManager transactionManager) {
+        this.queryFactory = new JPAQueryFactory(em);
+        this.memberLeaderboard = memberLeaderboard;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.readOnlyTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        reconcile();
+        log.info("leaderboard loaded members = {}", memberLeaderboard.size());
+    }
+
+    @Scheduled(initialDelayString = "${querydsl.leaderboard.reconcile-interval:600000}",
+            fixedDelayString = "${querydsl.leaderboard.reconcile-interval:600000}")
+    public void reconcile() {
+        memberLeaderboard.reload(() -> readOnlyTransaction.execute(status -> aggregate(null)));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBulkChanged(MembersBulkChangedEvent event) {
+        if (event.isRemoved()) {
+            event.getMemberIds().forEach(memberLeaderboard::remove);
+            return;
+        }
+        aggregate(member.id.in(event.getMemberIds())).forEach(memberLeaderboard::update);
+    }
+
+    private List<MemberLeaderboard.Entry> aggregate(Predicate where) {
+        List<Tuple> rows = queryFactory.select(member.id, member.name, member.age, post.count().intValue(), member.version)
+                .from(member)
+                .leftJoin(member.posts, post)
+                .where(where)
+                .groupBy(member.id, member.name, member.age, member.version)
+                .fetch();
+        return rows.stream()
+                .map(row -> new MemberLeaderboard.Entry(row.get(member.id), row.get(member.name), row.get(member.age),
+                        row.get(post.count().intValue()), row.get(member.version)))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,61 @@
+package study.querydsl.support;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**트랜잭션 커밋 후 실행
+ * 엔티티 리스너에서 메모리 색인, 집계를 갱신할 때 롤백된 변경이 남지 않도록 사용한다.
+ * 트랜잭션 밖이면 바로 실행한다.
+ * */
+public final class AfterCommit {
+
+    private AfterCommit() {
+    }
+
+    public static void run(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    /**현재 트랜잭션이 끝날 때(커밋, 롤백)까지 key를 표시한다.
+     * 커밋 후 반영될 변경이 남아있는지 같은 트랜잭션의 조회가 isMarked로 확인한다.
+     * REQUIRES_NEW로 트랜잭션이 중단되면 표시도 함께 떼어내므로 새 트랜잭션에는 보이지 않는다.
+     * 트랜잭션 밖이거나 이미 표시했으면 false를 반환한다.
+     * */
+    public static boolean mark(Object key) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive() || TransactionSynchronizationManager.hasResource(key)) {
+            return false;
+        }
+
+        TransactionSynchronizationManager.bindResource(key, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void suspend() {
+                TransactionSynchronizationManager.unbindResource(key);
+            }
+
+            @Override
+            public void resume() {
+                TransactionSynchronizationManager.bindResource(key, Boolean.TRUE);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(key);
+            }
+        });
+        return true;
+    }
+
+    public static boolean isMarked(Object key) {
+        return TransactionSynchronizationManager.hasResource(key);
+    }
+}
@@ -0,0 +1,48 @@
+package study.querydsl.support;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**메모리 집계, 색인을 DB에서 다시 읽는(reload) 동안의 변경 기록
+ * DB를 읽는 동안 커밋되어 반영된 변경은 읽은 결과에 없을 수 있으므로 기록해 두었다가 교체할 때 다시 반영한다.
+ * 읽기는 lock 밖에서 실행하므로 그동안의 갱신과 조회를 막지 않는다.
+ * 갱신하는 쪽은 lock을 잡은 채 record를 호출한다.
+ * */
+public final class ReloadRecorder<K, V> {
+
+    private final Object lock;
+    //reload가 동시에 실행되면 기록도 여러 개다. 같은 내용의 Map도 구분하도록 identity로 비교한다.
+    private final Set<Map<K, V>> recording = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    public ReloadRecorder(Object lock) {
+        this.lock = lock;
+    }
+
+    /**key의 변경 후 값, 삭제는 null을 진행 중인 모든 reload에 기록한다. lock 안에서 호출한다.*/
+    public void record(K key, V value) {
+        recording.forEach(changes -> changes.put(key, value));
+    }
+
+    /**loader를 lock 밖에서 실행하고, lock 안에서 읽은 결과와 그동안의 변경(key -> 값, 삭제는 null)으로 replace를 호출한다.*/
+    public <T> void reload(Supplier<T> loader, BiConsumer<T, Map<K, V>> replace) {
+        Map<K, V> changes = new HashMap<>();
+        synchronized (lock) {
+            recording.add(changes);
+        }
+        try {
+            T loaded = loader.get();
+            synchronized (lock) {
+                replace.accept(loaded, changes);
+            }
+        } finally {
+            synchronized (lock) {
+                recording.remove(changes);
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package study.querydsl.support;
+
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**테스트 메서드에서 나갈 수 있는 select 문의 최대 개수
+ * 초과하면 테스트가 실패하고 어떤 지연 로딩(Member.posts, Post.member 등)이 추가 쿼리를 만들었는지 알려준다.
+ * flush로 나가는 insert, update와 @BeforeEach에서 나간 쿼리는 세지 않는다.
+ * */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@ExtendWith(ExpectedQueriesExtension.class)
+public @interface ExpectedQueries {
+
+    int max();
+}
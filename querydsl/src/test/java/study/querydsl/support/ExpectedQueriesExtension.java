@@ -0,0 +1,85 @@
+package study.querydsl.support;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.extension.AfterTestExecutionCallback;
+import org.junit.jupiter.api.extension.BeforeTestExecutionCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.platform.commons.support.AnnotationSupport;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import study.querydsl.monitoring.QueryShapeContext;
+import study.querydsl.monitoring.QueryShapeScope;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**@ExpectedQueries 처리
+ * 테스트 메서드 실행 동안 나간 select 문을 QueryShapeScope로 세고
+ * 하이버네이트 통계의 컬렉션/엔티티 fetch 횟수 차이로 어떤 지연 로딩이 일어났는지 찾는다.
+ * 하이버네이트 통계를 사용하므로 hibernate.generate_statistics: true 가 필요하다.
+ * */
+public class ExpectedQueriesExtension implements BeforeTestExecutionCallback, AfterTestExecutionCallback {
+
+    private static final ExtensionContext.Namespace NAMESPACE = ExtensionContext.Namespace.create(ExpectedQueriesExtension.class);
+
+    @Override
+    public void beforeTestExecution(ExtensionContext context) {
+        ExtensionContext.Store store = context.getStore(NAMESPACE);
+        store.put("lazyLoads", lazyLoads(statistics(context)));
+        store.put("scope", QueryShapeContext.open("test:" + context.getDisplayName()));
+    }
+
+    @Override
+    public void afterTestExecution(ExtensionContext context) {
+        ExtensionContext.Store store = context.getStore(NAMESPACE);
+        QueryShapeScope scope = store.remove("scope", QueryShapeScope.class);
+        QueryShapeContext.close(scope);
+
+        int max = expectedQueries(context).max();
+        int selects = scope.getSelectCount();
+        if (selects <= max) {
+            return;
+        }
+
+        StringBuilder message = new StringBuilder()
+                .append("expected at most ").append(max).append(" select statements but was ").append(selects);
+
+        @SuppressWarnings("unchecked")
+        Map<String, Long> before = store.remove("lazyLoads", Map.class);
+        lazyLoads(statistics(context)).forEach((association, fetchCount) -> {
+            long loads = fetchCount - before.getOrDefault(association, 0L);
+            if (loads > 0) {
+                message.append("\n  lazy load ").append(association).append(" x").append(loads);
+            }
+        });
+        scope.getRepeatedSelects(2).forEach((sql, count) ->
+                message.append("\n  repeated x").append(count).append(": ").append(sql));
+        fail(message.toString());
+    }
+
+    private ExpectedQueries expectedQueries(ExtensionContext context) {
+        return AnnotationSupport.findAnnotation(context.getRequiredTestMethod(), ExpectedQueries.class)
+                .or(() -> AnnotationSupport.findAnnotation(context.getRequiredTestClass(), ExpectedQueries.class))
+                .orElseThrow();
+    }
+
+    private Statistics statistics(ExtensionContext context) {
+        return SpringExtension.getApplicationContext(context).getBean(EntityManagerFactory.class)
+                .unwrap(SessionFactory.class).getStatistics();
+    }
+
+    /**컬렉션(Member.posts)과 프록시 엔티티(Post.member)가 지연 로딩된 누적 횟수*/
+    private Map<String, Long> lazyLoads(Statistics statistics) {
+        Map<String, Long> lazyLoads = new HashMap<>();
+        for (String role : statistics.getCollectionRoleNames()) {
+            lazyLoads.put(role, statistics.getCollectionStatistics(role).getFetchCount());
+        }
+        for (String entityName : statistics.getEntityNames()) {
+            lazyLoads.put(entityName, statistics.getEntityStatistics(entityName).getFetchCount());
+        }
+        return lazyLoads;
+    }
+}
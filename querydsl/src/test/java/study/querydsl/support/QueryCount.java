@@ -0,0 +1,21 @@
+package study.querydsl.support;
+
+import study.querydsl.monitoring.QueryShapeContext;
+import study.querydsl.monitoring.QueryShapeScope;
+
+/**테스트 코드 블록 안에서 나간 select 문 개수*/
+public final class QueryCount {
+
+    private QueryCount() {
+    }
+
+    public static int selects(Runnable block) {
+        QueryShapeScope scope = QueryShapeContext.open("block");
+        try {
+            block.run();
+        } finally {
+            QueryShapeContext.close(scope);
+        }
+        return scope.getSelectCount();
+    }
+}
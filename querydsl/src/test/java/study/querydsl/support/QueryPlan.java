@@ -0,0 +1,60 @@
+package study.querydsl.support;
+
+import org.hibernate.Session;
+import study.querydsl.monitoring.QueryShapeContext;
+import study.querydsl.monitoring.QueryShapeScope;
+
+import javax.persistence.EntityManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**테스트 코드 블록 안에서 나간 select 문의 실행 계획
+ * p6spy로 기록한 SQL(파라미터 값 포함)을 h2 EXPLAIN으로 다시 실행한다.
+ * h2는 전체 스캔을 PUBLIC.테이블.tableScan, 인덱스 사용을 PUBLIC.인덱스명: 조건 으로 표시한다.
+ * SQL 주석의 JPQL 파라미터(?1, :name)를 하이버네이트가 해석하지 않도록 JDBC로 직접 실행한다.
+ * */
+public final class QueryPlan {
+
+    private QueryPlan() {
+    }
+
+    /**실행된 select 문 → 실행 계획*/
+    public static Map<String, String> explain(EntityManager em, Runnable block) {
+        QueryShapeScope scope = QueryShapeContext.open("explain");
+        try {
+            block.run();
+        } finally {
+            QueryShapeContext.close(scope);
+        }
+
+        Map<String, String> plans = new LinkedHashMap<>();
+        em.unwrap(Session.class).doWork(connection -> {
+            try (Statement statement = connection.createStatement()) {
+                for (String sql : scope.getExecutedSql()) {
+                    if (!QueryShapeScope.isSelect(sql)) {
+                        continue;
+                    }
+                    try (ResultSet rs = statement.executeQuery("explain " + sql)) {
+                        rs.next();
+                        plans.put(sql, rs.getString(1));
+                    }
+                }
+            }
+        });
+        return plans;
+    }
+
+    public static boolean isTableScan(String plan, String table) {
+        return plan.toUpperCase().contains("PUBLIC." + table.toUpperCase() + ".TABLESCAN");
+    }
+
+    public static boolean usesIndex(String plan, String index) {
+        return plan.toUpperCase().contains("PUBLIC." + index.toUpperCase());
+    }
+
+    public static boolean usesPrimaryKey(String plan) {
+        return plan.toUpperCase().contains("PUBLIC.PRIMARY_KEY");
+    }
+}
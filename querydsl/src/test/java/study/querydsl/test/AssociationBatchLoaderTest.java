@@ -0,0 +1,37 @@
+package study.querydsl.test;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.IllegalTransactionStateException;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.PostRepository;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**연관관계 일괄 초기화를 트랜잭션 밖에서 호출
+ * 트랜잭션 안에서의 동작은 JpaRepositoryTest.test14에서 확인한다.
+ * */
+@SpringBootTest
+public class AssociationBatchLoaderTest {
+
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    PostRepository postRepository;
+
+    /**
+     * 트랜잭션 밖에서는 호출한 쪽의 프록시를 초기화할 수 없으므로 조용히 새 트랜잭션을 열지 않고 실패한다.
+     */
+    @Test
+    @DisplayName("트랜잭션 밖에서 일괄 초기화")
+    void test1() {
+        assertThatThrownBy(() -> memberRepository.loadPosts(List.of()))
+                .isInstanceOf(IllegalTransactionStateException.class);
+        assertThatThrownBy(() -> postRepository.loadMembers(List.of()))
+                .isInstanceOf(IllegalTransactionStateException.class);
+    }
+}
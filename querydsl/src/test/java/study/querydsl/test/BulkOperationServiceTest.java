@@ -0,0 +1,134 @@
+package study.querydsl.test;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Post;
+import study.querydsl.service.BulkOperationService;
+import study.querydsl.service.BulkProgressListener;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QPost.post;
+
+/**BulkOperationService
+ * chunk마다 커밋되는지 확인해야 하므로 테스트 트랜잭션(@Transactional) 없이 실행하고 직접 정리한다.
+ * */
+@SpringBootTest
+public class BulkOperationServiceTest {
+
+    @Autowired
+    BulkOperationService bulkOperationService;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+    @PersistenceContext
+    EntityManager em;
+
+    JPAQueryFactory queryFactory;
+    TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    public void before() {
+        queryFactory = new JPAQueryFactory(em);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.executeWithoutResult(status -> {
+            Member memberA = new Member("memberA", 26);
+            Member memberB = new Member("memberB", 23);
+            Member memberC = new Member("memberC", 38);
+            Member memberD = new Member("memberD", 40);
+            em.persist(memberA);
+            em.persist(memberB);
+            em.persist(memberC);
+            em.persist(memberD);
+
+            em.persist(new Post("Post1", memberA));
+            em.persist(new Post("Post2", memberA));
+            em.persist(new Post("Post3", memberB));
+            em.persist(new Post("Post4", memberB));
+            em.persist(new Post("Post5", memberC));
+        });
+    }
+
+    @AfterEach
+    public void after() {
+        bulkOperationService.deleteMembers(member.id.isNotNull(), 1000, BulkProgressListener.NONE);
+    }
+
+    /**
+     * 트랜잭션 밖에서 호출하면 chunk마다 커밋되어 진행 중에도 다른 트랜잭션에서 처리된 회원이 보인다.
+     */
+    @Test
+    @DisplayName("chunk마다 커밋")
+    void test1() {
+        //memberA(26), memberB(23)를 1명씩 chunk로 나눠 수정
+        List<Long> committed = new ArrayList<>();
+        long updated = bulkOperationService.updateMembers(member.age.lt(30),
+                update -> update.set(member.age, member.age.add(1)), 1,
+                (operation, processedRows, chunkRows) -> committed.add(countUpdatedMembers()));
+
+        assertThat(updated).isEqualTo(2);
+        assertThat(committed).containsExactly(1L, 2L);
+    }
+
+    /**
+     * 트랜잭션 안에서 호출해도 chunk는 새 트랜잭션에서 커밋되므로 호출한 쪽이 롤백해도 남는다.
+     * 호출한 쪽의 영속성 컨텍스트는 em.clear 없이 대상 엔티티만 DB 상태로 맞춘다.
+     */
+    @Test
+    @DisplayName("호출한 쪽 영속성 컨텍스트 맞추기")
+    void test2() {
+        transactionTemplate.executeWithoutResult(status -> {
+            Member memberA = findMember("memberA");
+            Member memberC = findMember("memberC");
+            Post post1 = queryFactory.selectFrom(post).where(post.title.eq("Post1")).fetchOne();
+
+            long updated = bulkOperationService.updateMembers(member.age.lt(30),
+                    update -> update.set(member.age, member.age.add(1)), 1, BulkProgressListener.NONE);
+            assertThat(updated).isEqualTo(2);
+            assertThat(em.contains(memberA)).isTrue();
+            assertThat(memberA.getAge()).isEqualTo(27);
+            assertThat(memberC.getAge()).isEqualTo(38);
+
+            //memberA의 게시물 삭제시 게시물은 영속성 컨텍스트에서 분리되고 memberA의 postCount는 다시 계산된다.
+            long deleted = bulkOperationService.deletePosts(post.member.name.eq("memberA"), 100, BulkProgressListener.NONE);
+            assertThat(deleted).isEqualTo(2);
+            assertThat(em.contains(post1)).isFalse();
+            assertThat(memberA.getPostCount()).isEqualTo(0);
+            assertThat(memberA.getPosts()).isEmpty();
+
+            long removed = bulkOperationService.deleteMembers(member.name.eq("memberC"), 100, BulkProgressListener.NONE);
+            assertThat(removed).isEqualTo(1);
+            assertThat(em.contains(memberC)).isFalse();
+            assertThat(queryFactory.selectFrom(post).where(post.title.eq("Post5")).fetchOne()).isNull();
+
+            status.setRollbackOnly();
+        });
+
+        assertThat(countUpdatedMembers()).isEqualTo(2);
+        assertThat(queryFactory.select(member.count()).from(member).fetchOne()).isEqualTo(3);
+        assertThat(queryFactory.select(post.count()).from(post).fetchOne()).isEqualTo(2);
+    }
+
+    private long countUpdatedMembers() {
+        return queryFactory.select(member.count()).from(member)
+                .where(member.name.eq("memberA").and(member.age.eq(27))
+                        .or(member.name.eq("memberB").and(member.age.eq(24))))
+                .fetchOne();
+    }
+
+    private Member findMember(String name) {
+        return queryFactory.selectFrom(member).where(member.name.eq(name)).fetchOne();
+    }
+}
@@ -0,0 +1,71 @@
+package study.querydsl.test;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberPostDto;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.CappedPage;
+import study.querydsl.repository.CountMode;
+import study.querydsl.repository.MemberRepository;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**전체 개수 상한 Count(CountMode.CAPPED)
+ * cap을 넘는 경우를 적은 데이터로 확인하도록 querydsl.count.cap을 2로 줄인다.
+ * */
+@SpringBootTest(properties = "querydsl.count.cap=2")
+@Transactional
+public class CappedCountTest {
+
+    static final MemberSearchCondition CONDITION = new MemberSearchCondition("cappedMember", null);
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @BeforeEach
+    public void before() {
+        memberRepository.save(new Member("cappedMemberA", 26));
+        memberRepository.save(new Member("cappedMemberB", 23));
+        memberRepository.save(new Member("cappedMemberC", 38));
+        memberRepository.save(new Member("cappedMemberD", 40));
+    }
+
+    /**
+     * cap보다 많으면 cap + 1 개에서 세기를 멈추고 전체 개수는 cap, totalCapped는 true가 된다.
+     */
+    @Test
+    @DisplayName("cap을 넘는 전체 개수")
+    void test1() {
+        Page<MemberPostDto> capped = memberRepository.searchPageComplex(CONDITION, PageRequest.of(0, 2), CountMode.CAPPED);
+
+        assertThat(((CappedPage<MemberPostDto>) capped).isTotalCapped()).isTrue();
+        assertThat(((CappedPage<MemberPostDto>) capped).getCountCap()).isEqualTo(2);
+        assertThat(capped.getTotalElements()).isEqualTo(2);
+        assertThat(capped.getContent()).hasSize(2);
+
+        Page<MemberPostDto> exact = memberRepository.searchPageComplex(CONDITION, PageRequest.of(0, 2), CountMode.EXACT);
+        assertThat(exact.getTotalElements()).isEqualTo(4);
+    }
+
+    /**
+     * cap과 같으면 넘은 것이 아니므로 정확한 개수다.
+     */
+    @Test
+    @DisplayName("cap과 같은 전체 개수")
+    void test2() {
+        MemberSearchCondition condition = new MemberSearchCondition("cappedMemberA", null);
+        memberRepository.save(new Member("cappedMemberAA", 30));
+
+        Page<MemberPostDto> capped = memberRepository.searchPageComplex(condition, PageRequest.of(0, 1), CountMode.CAPPED);
+
+        assertThat(((CappedPage<MemberPostDto>) capped).isTotalCapped()).isFalse();
+        assertThat(capped.getTotalElements()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,107 @@
+package study.querydsl.test;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Slice;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberPostDto;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.service.BulkLoadService;
+import study.querydsl.support.QueryCount;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static study.querydsl.entity.QMember.member;
+
+/**No Offset(커서) 페이징
+ * 회원 20000명을 size 2로 나누면 10000 페이지가 된다.
+ * 첫 페이지와 10000번째 페이지 모두 offset 페이징과 같은 회원을 반환하고 select 문은 하나만 나가야 한다.
+ * */
+@SpringBootTest
+@AutoConfigureMockMvc
+@Transactional
+public class CursorPagingTest {
+
+    static final int MEMBERS = 20000;
+    static final int SIZE = 2;
+
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    BulkLoadService bulkLoadService;
+    @Autowired
+    MockMvc mockMvc;
+    @PersistenceContext
+    EntityManager em;
+
+    JPAQueryFactory queryFactory;
+
+    @BeforeEach
+    public void before() {
+        queryFactory = new JPAQueryFactory(em);
+        bulkLoadService.seed(MEMBERS, 0, 5000);
+    }
+
+    @Test
+    @DisplayName("첫 페이지와 10000번째 페이지")
+    void test1() {
+        MemberSearchCondition cond = new MemberSearchCondition(null, null);
+
+        //첫 페이지
+        List<Slice<MemberPostDto>> first = new ArrayList<>();
+        int firstSelects = QueryCount.selects(() -> first.add(memberRepository.searchSliceByCursor(cond, null, SIZE)));
+        assertThat(firstSelects).isEqualTo(1);
+        assertThat(first.get(0).getContent()).extracting("memberId").containsExactlyElementsOf(offsetPage(0));
+        assertThat(first.get(0).hasNext()).isTrue();
+
+        //10000번째(마지막) 페이지, 커서는 바로 앞 페이지의 마지막 회원
+        int lastPage = MEMBERS / SIZE - 1;
+        Long lastMemberId = queryFactory.select(member.id).from(member)
+                .orderBy(member.id.asc())
+                .offset((long) lastPage * SIZE - 1)
+                .limit(1)
+                .fetchOne();
+
+        List<Slice<MemberPostDto>> deep = new ArrayList<>();
+        int deepSelects = QueryCount.selects(() -> deep.add(memberRepository.searchSliceByCursor(cond, lastMemberId, SIZE)));
+        assertThat(deepSelects).isEqualTo(1);
+        assertThat(deep.get(0).getContent()).extracting("memberId").containsExactlyElementsOf(offsetPage(lastPage));
+        assertThat(deep.get(0).hasNext()).isFalse();
+    }
+
+    /**
+     * 커서 페이징 API의 size가 0 이하이면 400
+     */
+    @Test
+    @DisplayName("커서 페이징 size 검증")
+    void test2() throws Exception {
+        Long memberId = offsetPage(0).get(0);
+        mockMvc.perform(get("/members/postCount/cursor").param("size", "0"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/members/{memberId}/posts", memberId).param("size", "-1"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/members/{memberId}/posts", memberId).param("size", "1"))
+                .andExpect(status().isOk());
+    }
+
+    private List<Long> offsetPage(int page) {
+        return queryFactory.select(member.id).from(member)
+                .orderBy(member.id.asc())
+                .offset((long) page * SIZE)
+                .limit(SIZE)
+                .fetch();
+    }
+}
@@ -1,6 +1,10 @@
 package study.querydsl.test;
 
 import org.assertj.core.api.Assertions;
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -8,18 +12,41 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberDto;
 import study.querydsl.dto.MemberPostDto;
 import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.PostTitleDto;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.Post;
+import study.querydsl.repository.CappedPage;
+import study.querydsl.repository.CountMode;
+import study.querydsl.repository.CountQueryExecutor;
+import study.querydsl.repository.MemberCountCache;
 import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.MemberReadRepository;
 import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.PostCountStrategy;
 import study.querydsl.repository.PostRepository;
+import study.querydsl.monitoring.QueryShapeRecorder;
+import study.querydsl.monitoring.QueryShapeStats;
+import study.querydsl.repository.name.NgramMemberNameSearch;
+import study.querydsl.service.PostIngestService;
+import study.querydsl.support.ExpectedQueries;
+import study.querydsl.support.QueryCount;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.*;
 
@@ -33,6 +60,16 @@ public class JpaRepositoryTest {
     PostRepository postRepository;
     @Autowired
     MemberJpaRepository memberJpaRepository;
+    @Autowired
+    MemberCountCache memberCountCache;
+    @Autowired
+    MemberReadRepository memberReadRepository;
+    @Autowired
+    PostIngestService postIngestService;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+    @Autowired
+    QueryShapeRecorder queryShapeRecorder;
     @PersistenceContext
     EntityManager em;
 
@@ -55,6 +92,7 @@ public class JpaRepositoryTest {
      */
     @Test
     @DisplayName("JPA리포지토리를 직접 사용한 동적 쿼리")
+    @ExpectedQueries(max = 3)
     void test1() {
         MemberSearchCondition cond1 = new MemberSearchCondition("memberA", null);
         List<MemberPostDto> result1 = memberJpaRepository.searchByWhere(cond1);
@@ -99,6 +137,7 @@ public class JpaRepositoryTest {
 
     @Test
     @DisplayName("페이징 연동 Count쿼리 같이 날리는 경우")
+    @ExpectedQueries(max = 2)
     void test3() {
         MemberSearchCondition cond = new MemberSearchCondition(null, 1);
         PageRequest pageRequest = PageRequest.of(0, 3);
@@ -110,6 +149,7 @@ public class JpaRepositoryTest {
 
     @Test
     @DisplayName("페이징 연동 Count 쿼리 최적화후 따로 날리는 경우")
+    @ExpectedQueries(max = 2)
     void test4() {
         MemberSearchCondition cond = new MemberSearchCondition(null, 1);
         PageRequest pageRequest = PageRequest.of(0, 3);
@@ -119,6 +159,412 @@ public class JpaRepositoryTest {
         assertThat(result.getContent()).extracting("name").containsExactly("memberA","memberB","memberC");
     }
 
+    /**
+     * 커서 페이징으로 끝까지 조회한 결과는 offset 페이징으로 조회한 결과와 같아야 한다.
+     * 커서 페이징은 몇 번째 페이지든 where member_id > ? limit ? 쿼리 하나만 나간다. (CursorPagingTest에서 10000번째 페이지까지 확인)
+     */
+    @Test
+    @DisplayName("No Offset 커서 페이징")
+    @ExpectedQueries(max = 6)
+    void test5() {
+        MemberSearchCondition cond = new MemberSearchCondition(null, null);
+
+        List<MemberPostDto> byCursor = new ArrayList<>();
+        Long lastMemberId = null;
+        Slice<MemberPostDto> slice;
+        do {
+            slice = memberRepository.searchSliceByCursor(cond, lastMemberId, 1);
+            byCursor.addAll(slice.getContent());
+            lastMemberId = slice.getContent().get(slice.getNumberOfElements() - 1).getMemberId();
+        } while (slice.hasNext());
+
+        List<MemberPostDto> byOffset = memberRepository.searchByWhere(cond);
+        assertThat(byCursor).extracting("memberId").containsExactlyElementsOf(
+                byOffset.stream().map(MemberPostDto::getMemberId).sorted().collect(Collectors.toList()));
+
+        //마지막 회원 이후는 비어있고 다음 페이지가 없다.
+        Slice<MemberPostDto> last = memberRepository.searchSliceByCursor(cond, lastMemberId, 1);
+        assertThat(last.getContent()).isEmpty();
+        assertThat(last.hasNext()).isFalse();
+    }
+
+    /**
+     * 서브쿼리 방식과 group by 집계 방식은 같은 결과를 반환해야 한다.
+     * 게시물이 없는 memberD도 postCount 0으로 조회되어야 한다.
+     */
+    @Test
+    @DisplayName("게시물 수 집계 방식 비교")
+    void test6() {
+        List<MemberSearchCondition> conditions = List.of(
+                new MemberSearchCondition("memberA", null),
+                new MemberSearchCondition(null, 2),
+                new MemberSearchCondition("member", 1),
+                new MemberSearchCondition(null, null));
+
+        for (MemberSearchCondition cond : conditions) {
+            List<MemberPostDto> bySubQuery = memberRepository.searchByWhere(cond, PostCountStrategy.SUBQUERY);
+            List<MemberPostDto> byGroupBy = memberRepository.searchByWhere(cond, PostCountStrategy.GROUP_BY);
+            assertThat(byGroupBy).usingRecursiveFieldByFieldElementComparator()
+                    .containsExactlyInAnyOrderElementsOf(bySubQuery);
+
+            List<MemberPostDto> byColumn = memberRepository.searchByWhere(cond, PostCountStrategy.COLUMN);
+            assertThat(byColumn).usingRecursiveFieldByFieldElementComparator()
+                    .containsExactlyInAnyOrderElementsOf(bySubQuery);
+
+            List<MemberPostDto> byJpaRepository = memberJpaRepository.searchByWhere(cond, PostCountStrategy.GROUP_BY);
+            assertThat(byJpaRepository).usingRecursiveFieldByFieldElementComparator()
+                    .containsExactlyInAnyOrderElementsOf(bySubQuery);
+        }
+
+        List<MemberPostDto> all = memberRepository.searchByWhere(new MemberSearchCondition("memberD", null), PostCountStrategy.GROUP_BY);
+        assertThat(all).extracting("postCount").containsExactly(0);
+    }
+
+    /**
+     * 게시물 작성, 작성자 변경, 삭제시 반정규화된 postCount가 함께 변경되어야 한다.
+     * bulk 연산으로 postCount가 틀어져도 보정 작업으로 실제 게시물 수로 돌아와야 한다.
+     */
+    @Test
+    @DisplayName("반정규화된 게시물 수 유지 및 보정")
+    void test7() {
+        Member memberA = findMember("memberA");
+        Member memberB = findMember("memberB");
+        assertThat(memberA.getPostCount()).isEqualTo(2);
+        assertThat(memberB.getPostCount()).isEqualTo(2);
+
+        //Post1 작성자 memberA -> memberB 변경, Post3 삭제
+        List<Post> posts = postRepository.findAll();
+        Post post1 = posts.stream().filter(p -> p.getTitle().equals("Post1")).findFirst().get();
+        Post post3 = posts.stream().filter(p -> p.getTitle().equals("Post3")).findFirst().get();
+        post1.addMember(memberB);
+        postRepository.delete(post3);
+        em.flush();
+        assertThat(memberA.getPostCount()).isEqualTo(1);
+        assertThat(memberB.getPostCount()).isEqualTo(2);
+
+        //bulk 연산으로 postCount를 틀어지게 한 뒤 보정
+        em.createQuery("update Member m set m.postCount = 100").executeUpdate();
+        em.clear();
+        long reconciled = memberRepository.reconcilePostCount();
+        assertThat(reconciled).isEqualTo(4);
+
+        em.clear();
+        List<MemberPostDto> byColumn = memberRepository.searchByWhere(new MemberSearchCondition(null, null), PostCountStrategy.COLUMN);
+        List<MemberPostDto> bySubQuery = memberRepository.searchByWhere(new MemberSearchCondition(null, null), PostCountStrategy.SUBQUERY);
+        assertThat(byColumn).usingRecursiveFieldByFieldElementComparator()
+                .containsExactlyInAnyOrderElementsOf(bySubQuery);
+    }
+
+    /**
+     * 같은 조건의 Count 쿼리는 캐시에서 조회하고 게시물이 추가되면 캐시가 무효화되어야 한다.
+     */
+    @Test
+    @DisplayName("Count 쿼리 캐시")
+    void test8() {
+        PageRequest pageRequest = PageRequest.of(0, 2);
+        memberRepository.searchPageComplex(new MemberSearchCondition(null, 1), pageRequest);
+        long hit = memberCountCache.getHitCount();
+        long miss = memberCountCache.getMissCount();
 
+        Page<MemberPostDto> cached = memberRepository.searchPageComplex(new MemberSearchCondition(null, 1), pageRequest);
+        assertThat(cached.getTotalElements()).isEqualTo(3);
+        assertThat(memberCountCache.getHitCount()).isEqualTo(hit + 1);
+        assertThat(memberCountCache.getMissCount()).isEqualTo(miss);
+
+        //memberD가 게시물을 작성하면 Count가 바뀌므로 다시 조회해야 한다.
+        postRepository.save(new Post("Post6", findMember("memberD")));
+        Page<MemberPostDto> reloaded = memberRepository.searchPageComplex(new MemberSearchCondition(null, 1), pageRequest);
+        assertThat(reloaded.getTotalElements()).isEqualTo(4);
+        assertThat(memberCountCache.getMissCount()).isEqualTo(miss + 1);
+    }
+
+    /**
+     * cap보다 적은 데이터는 CAPPED로 조회해도 정확한 전체 개수가 나와야 한다.
+     */
+    @Test
+    @DisplayName("전체 개수 상한 Count")
+    void test9() {
+        MemberSearchCondition cond = new MemberSearchCondition(null, 1);
+        PageRequest pageRequest = PageRequest.of(0, 2);
+
+        Page<MemberPostDto> exact = memberRepository.searchPageComplex(cond, pageRequest, CountMode.EXACT);
+        Page<MemberPostDto> capped = memberRepository.searchPageComplex(cond, pageRequest, CountMode.CAPPED);
+
+        assertThat(capped).isInstanceOf(CappedPage.class);
+        assertThat(((CappedPage<MemberPostDto>) capped).isTotalCapped()).isFalse();
+        assertThat(capped.getTotalElements()).isEqualTo(exact.getTotalElements());
+        assertThat(capped.getContent()).usingRecursiveFieldByFieldElementComparator()
+                .containsExactlyElementsOf(exact.getContent());
+    }
+
+    /**
+     * 스트리밍으로 조회한 결과는 List로 한번에 조회한 결과와 같아야 한다.
+     */
+    @Test
+    @DisplayName("검색 결과 스트리밍")
+    void test10() {
+        MemberSearchCondition cond = new MemberSearchCondition("member", null);
+
+        List<MemberPostDto> streamed = new ArrayList<>();
+        long count = memberJpaRepository.streamByWhere(cond, streamed::add);
+
+        List<MemberPostDto> fetched = memberJpaRepository.searchByWhere(cond);
+        assertThat(count).isEqualTo(fetched.size());
+        assertThat(streamed).usingRecursiveFieldByFieldElementComparator()
+                .containsExactlyInAnyOrderElementsOf(fetched);
+    }
+
+    /**
+     * 미리 만든 JPQL로 조회한 결과는 QueryDSL로 조회한 결과와 같아야 하고
+     * 같은 조건 조합을 다시 조회하면 하이버네이트 쿼리 플랜 캐시가 hit 되어야 한다.
+     */
+    @Test
+    @DisplayName("조건 조합별 JPQL 템플릿")
+    void test11() {
+        List<MemberSearchCondition> conditions = List.of(
+                new MemberSearchCondition("memberA", null),
+                new MemberSearchCondition(null, 2),
+                new MemberSearchCondition("member", 1),
+                new MemberSearchCondition("%", null),
+                new MemberSearchCondition(null, null));
+
+        for (MemberSearchCondition cond : conditions) {
+            assertThat(memberRepository.searchByTemplate(cond)).usingRecursiveFieldByFieldElementComparator()
+                    .containsExactlyInAnyOrderElementsOf(memberRepository.searchByWhere(cond));
+        }
+
+        Statistics statistics = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        long planCacheHit = statistics.getQueryPlanCacheHitCount();
+        memberRepository.searchByTemplate(new MemberSearchCondition("memberB", 1));
+        assertThat(statistics.getQueryPlanCacheHitCount()).isGreaterThan(planCacheHit);
+    }
+
+    /**
+     * trigram 색인은 like와 같은 회원을 찾아야 하고
+     * 검색어가 짧거나 후보가 너무 많으면 null을 반환해 like를 사용하게 한다.
+     */
+    @Test
+    @DisplayName("이름 trigram 색인")
+    void test12() {
+        NgramMemberNameSearch nameSearch = new NgramMemberNameSearch(2);
+        nameSearch.index(1L, "memberA");
+        nameSearch.index(2L, "memberB");
+        nameSearch.index(3L, "teamA");
+        assertThat(nameSearch.findIdsContaining("mberA")).as("색인 적재 전에는 like").isNull();
+
+        nameSearch.markReady();
+        assertThat(nameSearch.findIdsContaining("mberA")).containsExactly(1L);
+        assertThat(nameSearch.findIdsContaining("xyz")).isEmpty();
+        assertThat(nameSearch.findIdsContaining("mA")).as("3글자 미만은 like").isNull();
+
+        nameSearch.index(4L, "memberAA");
+        nameSearch.index(5L, "memberAB");
+        assertThat(nameSearch.findIdsContaining("memberA")).as("후보가 많으면 like").isNull();
+
+        nameSearch.index(1L, "teamB");
+        nameSearch.remove(4L);
+        assertThat(nameSearch.findIdsContaining("mberA")).containsExactly(5L);
+        assertThat(nameSearch.findIdsContaining("eamB")).containsExactly(1L);
+    }
 
+    /**
+     * 조회 전용 리포지토리는 엔티티 조회 결과와 같은 DTO를 반환하고 영속성 컨텍스트에 엔티티를 남기지 않는다.
+     */
+    @Test
+    @DisplayName("DTO 조회 전용 리포지토리")
+    void test13() {
+        MemberSearchCondition cond = new MemberSearchCondition("member", 1);
+        em.flush();
+        em.clear();
+
+        List<MemberDto> members = memberReadRepository.findMembers(cond);
+        List<MemberPostDto> memberPosts = memberReadRepository.findMemberPosts(cond);
+        List<PostTitleDto> postTitles = memberReadRepository.findPostTitles(new MemberSearchCondition("memberA", null));
+        assertThat(em.unwrap(SessionImplementor.class).getPersistenceContext().getNumberOfManagedEntities()).isZero();
+
+        assertThat(members).extracting("name").containsExactly("memberA", "memberB", "memberC");
+        assertThat(memberPosts).usingRecursiveFieldByFieldElementComparator()
+                .containsExactlyInAnyOrderElementsOf(memberRepository.searchByWhere(cond, PostCountStrategy.COLUMN));
+        assertThat(postTitles).extracting("title").containsExactly("Post1", "Post2");
+    }
+
+    /**
+     * 게시물 조회 1번 + 작성자 in 쿼리 1번, 회원 조회 1번 + 게시물 컬렉션 in 쿼리 1번
+     * 연관관계를 돌면서 접근해도 지연 로딩 쿼리가 추가로 나가지 않는다.
+     */
+    @Test
+    @DisplayName("연관관계 일괄 초기화")
+    @ExpectedQueries(max = 4)
+    void test14() {
+        em.flush();
+        em.clear();
+
+        List<Post> posts = postRepository.loadMembers(postRepository.findAll());
+        assertThat(posts).extracting(p -> p.getMember().getName())
+                .containsExactlyInAnyOrder("memberA", "memberA", "memberB", "memberB", "memberC");
+
+        List<Member> members = memberRepository.loadPosts(memberRepository.findAll());
+        assertThat(members).extracting(m -> m.getPosts().size())
+                .containsExactlyInAnyOrder(2, 2, 1, 0);
+    }
+
+    /**
+     * 작성자의 게시물을 id 순서로 커서 페이징
+     */
+    @Test
+    @DisplayName("작성자 게시물 커서 페이징")
+    void test15() {
+        Member memberA = findMember("memberA");
+        for (int i = 0; i < 3; i++) {
+            postRepository.save(new Post("PostA" + i, memberA));
+        }
+
+        Slice<PostTitleDto> first = postRepository.findPostsOfMember(memberA.getId(), null, 3);
+        assertThat(first.hasNext()).isTrue();
+        assertThat(first.getContent()).extracting("title").containsExactly("Post1", "Post2", "PostA0");
+
+        Long lastPostId = first.getContent().get(2).getPostId();
+        Slice<PostTitleDto> second = postRepository.findPostsOfMember(memberA.getId(), lastPostId, 3);
+        assertThat(second.hasNext()).isFalse();
+        assertThat(second.getContent()).extracting("title").containsExactly("PostA1", "PostA2");
+    }
+
+    /**
+     * 대량 작성은 게시물 컬렉션을 초기화하지 않고 게시물 수를 update 한 번으로 증가시킨다.
+     */
+    @Test
+    @DisplayName("게시물 대량 작성")
+    void test16() {
+        Long memberId = findMember("memberD").getId();
+        List<String> titles = List.of("PostD1", "PostD2", "PostD3");
+
+        assertThat(postIngestService.ingest(memberId, titles)).isEqualTo(3);
+
+        Member memberD = memberRepository.findById(memberId).get();
+        assertThat(Hibernate.isInitialized(memberD.getPosts())).isFalse();
+        assertThat(memberD.getPostCount()).isEqualTo(3);
+        assertThat(postRepository.findPostsOfMember(memberId, null, 10).getContent())
+                .extracting("title").containsExactly("PostD1", "PostD2", "PostD3");
+    }
+
+    /**
+     * 작성자 변경시 기존 작성자의 게시물 목록과 게시물 수에서 빠진다.
+     */
+    @Test
+    @DisplayName("게시물 작성자 변경")
+    void test18() {
+        Member memberA = findMember("memberA");
+        Member memberD = findMember("memberD");
+        Post post1 = memberA.getPosts().get(0);
+
+        post1.addMember(memberD);
+        assertThat(memberA.getPosts()).doesNotContain(post1);
+        assertThat(memberA.getPostCount()).isEqualTo(1);
+        assertThat(memberD.getPosts()).containsExactly(post1);
+        assertThat(memberD.getPostCount()).isEqualTo(1);
+
+        //같은 작성자로 다시 지정하면 바뀌지 않는다.
+        post1.addMember(memberD);
+        assertThat(memberD.getPostCount()).isEqualTo(1);
+    }
+
+    /**
+     * Count 스레드가 모두 사용 중이면 큐에서 기다리지 않고 await를 호출한 스레드에서 실행한다.
+     */
+    @Test
+    @DisplayName("Count 스레드 풀이 가득 찬 경우")
+    void test19() throws Exception {
+        CountQueryExecutor executor = new CountQueryExecutor(transactionManager, 1, Duration.ofSeconds(5));
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            Future<Long> pooled = executor.submit(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return 1L;
+            });
+            assertThat(executor.isCallerRuns(pooled)).isFalse();
+
+            AtomicReference<Thread> countThread = new AtomicReference<>();
+            Future<Long> callerRuns = executor.submit(() -> {
+                countThread.set(Thread.currentThread());
+                return 2L;
+            });
+            assertThat(executor.isCallerRuns(callerRuns)).isTrue();
+            assertThat(executor.await(callerRuns)).isEqualTo(2L);
+            assertThat(countThread.get()).isSameAs(Thread.currentThread());
+
+            release.countDown();
+            assertThat(executor.await(pooled)).isEqualTo(1L);
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * 쓰기 트랜잭션 안에서는 Count 스레드가 커밋되지 않은 회원을 볼 수 없으므로 같은 트랜잭션에서 Count를 조회해야 한다.
+     */
+    @Test
+    @DisplayName("쓰기 트랜잭션 안에서 내용과 Count 동시 조회")
+    void test20() {
+        MemberSearchCondition cond = new MemberSearchCondition("member", null);
+        PageRequest pageRequest = PageRequest.of(0, 2);
+
+        Page<MemberPostDto> parallel = memberRepository.searchPageParallel(cond, pageRequest);
+        Page<MemberPostDto> complex = memberRepository.searchPageComplex(cond, pageRequest);
+
+        assertThat(parallel.getTotalElements()).isEqualTo(4);
+        assertThat(parallel.getTotalElements()).isEqualTo(complex.getTotalElements());
+        assertThat(parallel.getContent()).usingRecursiveFieldByFieldElementComparator()
+                .containsExactlyElementsOf(complex.getContent());
+    }
+
+    /**
+     * 조회 전용 리포지토리는 flush 하지 않으므로 쓰기 트랜잭션에서 아직 flush 하지 않은 변경은 보이지 않는다.
+     * 엔티티 리포지토리는 조회 전에 flush 하므로 보인다.
+     */
+    @Test
+    @DisplayName("조회 전용 리포지토리는 flush 하지 않는다")
+    void test21() {
+        //findAll도 조회 전에 flush 하므로 변경 전에 찾아둔다.
+        Member memberA = findMember("memberA");
+        MemberSearchCondition cond = new MemberSearchCondition("memberE", null);
+        memberRepository.save(new Member("memberE", 50));
+        memberA.setName("memberEA");
+
+        assertThat(memberReadRepository.findMembers(cond)).isEmpty();
+        assertThat(memberReadRepository.findMemberPosts(cond)).isEmpty();
+
+        em.flush();
+        assertThat(memberReadRepository.findMembers(cond)).extracting("name").containsExactly("memberEA", "memberE");
+        assertThat(memberRepository.searchByWhere(cond)).extracting("name").containsExactlyInAnyOrder("memberEA", "memberE");
+    }
+
+    /**
+     * 리포지토리 프록시와 사용자 정의 구현(MemberRepositoryImpl)을 거쳐도 SQL은 메서드 하나에 한 번만 기록된다.
+     * 바깥 scope(QueryCount)는 닫힌 안쪽 scope의 합계를 더해 같은 SQL을 센다.
+     */
+    @Test
+    @DisplayName("쿼리 지표 중복 기록 없음")
+    void test22() {
+        em.flush();
+        queryShapeRecorder.reset();
+        MemberSearchCondition cond = new MemberSearchCondition("member", null);
+
+        int selects = QueryCount.selects(() -> memberRepository.searchPageComplex(cond, PageRequest.of(0, 2)));
+
+        Map<String, QueryShapeStats> stats = queryShapeRecorder.getStats();
+        assertThat(selects).isPositive();
+        assertThat(stats).containsOnlyKeys("MemberRepository.searchPageComplex");
+        assertThat(stats.get("MemberRepository.searchPageComplex").getStatements()).isEqualTo(selects);
+    }
+
+    private Member findMember(String name) {
+        return memberRepository.findAll().stream()
+                .filter(m -> name.equals(m.getName()))
+                .findFirst().get();
+    }
 }
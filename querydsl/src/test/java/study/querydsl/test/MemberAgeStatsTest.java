@@ -0,0 +1,136 @@
+package study.querydsl.test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberAgeStats;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.MemberReadRepository;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.service.BulkOperationService;
+import study.querydsl.service.BulkProgressListener;
+import study.querydsl.service.agestats.MemberAgeStatistics;
+import study.querydsl.service.agestats.MemberAgeStatsLoader;
+import study.querydsl.support.QueryCount;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static study.querydsl.entity.QMember.member;
+
+/**회원 나이 통계 메모리 집계
+ * 리스너는 커밋 후에 반영하므로 테스트 트랜잭션(@Transactional) 없이 실행하고 직접 정리한다.
+ * 다른 테스트가 남긴 회원이 있어도 되도록 전체 값 대신 DB 집계(ageStatsLive)와 같은지 비교한다.
+ * */
+@SpringBootTest
+public class MemberAgeStatsTest {
+
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    MemberReadRepository memberReadRepository;
+    @Autowired
+    MemberAgeStatsLoader memberAgeStatsLoader;
+    @Autowired
+    BulkOperationService bulkOperationService;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    public void before() {
+        memberRepository.save(new Member("ageStatsA", 26));
+        memberRepository.save(new Member("ageStatsB", 23));
+        memberRepository.save(new Member("ageStatsC", 38));
+        memberRepository.save(new Member("ageStatsD", 40));
+    }
+
+    @AfterEach
+    public void after() {
+        bulkOperationService.deleteMembers(member.name.startsWith("ageStats"), 1000, BulkProgressListener.NONE);
+    }
+
+    /**
+     * 커밋된 회원 저장은 한 명씩 반영되고 SQL 없이 조회한 통계가 DB 집계와 같아야 한다.
+     */
+    @Test
+    @DisplayName("나이 통계 메모리 집계")
+    void test1() {
+        MemberAgeStats live = memberReadRepository.ageStatsLive();
+        assertThat(QueryCount.selects(() -> memberReadRepository.ageStats())).isZero();
+        assertThat(memberReadRepository.ageStats()).isEqualTo(live);
+
+        memberAgeStatsLoader.refresh();
+        assertThat(memberAgeStatsLoader.verify()).isTrue();
+        assertThat(memberReadRepository.ageStats()).isEqualTo(live);
+    }
+
+    /**
+     * 트랜잭션 안에서 다시 적재해도 그 트랜잭션의 커밋되지 않은 회원은 통계에 들어가지 않는다.
+     */
+    @Test
+    @DisplayName("트랜잭션 안에서 다시 적재")
+    void test2() {
+        MemberAgeStats before = memberReadRepository.ageStats();
+
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.executeWithoutResult(status -> {
+            memberRepository.save(new Member("ageStatsE", 99));
+            memberAgeStatsLoader.refresh();
+            assertThat(memberReadRepository.ageStats().getCount()).isEqualTo(before.getCount());
+            status.setRollbackOnly();
+        });
+
+        assertThat(memberReadRepository.ageStats()).isEqualTo(before);
+        assertThat(memberAgeStatsLoader.verify()).isTrue();
+    }
+
+    /**
+     * 회원 한 명씩 반영하고, 다시 읽는 동안 반영된 변경은 교체 후에도 남고 세대 번호가 바뀐다.
+     */
+    @Test
+    @DisplayName("나이 통계 증분 갱신")
+    void test3() {
+        MemberAgeStatistics statistics = new MemberAgeStatistics(10);
+        statistics.replaceAll(List.of(new MemberAgeStatistics.Entry(1L, 26, 0), new MemberAgeStatistics.Entry(4L, 40, 0)));
+        statistics.update(1L, 45, 1);
+        statistics.remove(4L);
+        MemberAgeStats stats = statistics.get();
+        assertThat(stats.getCount()).isEqualTo(1);
+        assertThat(stats.getMin()).isEqualTo(45);
+        assertThat(stats.getAvg()).isEqualTo(45.0);
+        assertThat(stats.getBuckets()).containsExactly(entry(40, 1L));
+
+        long generation = statistics.generation();
+        statistics.reload(() -> {
+            statistics.update(1L, 50, 2);
+            return List.of(new MemberAgeStatistics.Entry(1L, 26, 1), new MemberAgeStatistics.Entry(4L, 40, 0));
+        });
+        assertThat(statistics.getIfUnchanged(generation)).isNull();
+        assertThat(statistics.get().getCount()).isEqualTo(2);
+        assertThat(statistics.get().getSum()).isEqualTo(90);
+        assertThat(statistics.getIfUnchanged(statistics.generation())).isEqualTo(statistics.get());
+    }
+
+    /**
+     * 순서가 바뀌어 도착한 오래된 나이와 삭제 후에 도착한 갱신은 반영하지 않는다.
+     */
+    @Test
+    @DisplayName("순서가 바뀐 갱신")
+    void test4() {
+        MemberAgeStatistics statistics = new MemberAgeStatistics(10);
+        statistics.update(1L, 30, 2);
+        statistics.update(1L, 20, 1);
+        assertThat(statistics.get().getSum()).isEqualTo(30);
+
+        statistics.update(2L, 40, 0);
+        statistics.remove(2L);
+        statistics.update(2L, 41, 1);
+        assertThat(statistics.get().getCount()).isEqualTo(1);
+        assertThat(statistics.get().getMax()).isEqualTo(30);
+    }
+}
@@ -0,0 +1,95 @@
+package study.querydsl.test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberPostDto;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Post;
+import study.querydsl.repository.MemberJpaRepository;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.PostRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**NDJSON 내보내기 /members/postCount/export
+ * MockMvc는 테스트와 같은 스레드에서 실행되므로 테스트 트랜잭션에서 저장한 회원을 조회한다.
+ * */
+@SpringBootTest
+@AutoConfigureMockMvc
+@Transactional
+public class MemberExportTest {
+
+    @Autowired
+    MockMvc mockMvc;
+    @Autowired
+    ObjectMapper objectMapper;
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    PostRepository postRepository;
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @BeforeEach
+    public void before() {
+        Member memberA = memberRepository.save(new Member("memberA", 26));
+        Member memberB = memberRepository.save(new Member("memberB", 23));
+        memberRepository.save(new Member("memberC", 38));
+
+        postRepository.save(new Post("Post1", memberA));
+        postRepository.save(new Post("Post2", memberA));
+        postRepository.save(new Post("Post3", memberB));
+    }
+
+    /**
+     * 한 줄에 회원 한 명씩 JSON으로 응답하고 결과는 searchByWhere와 같아야 한다.
+     */
+    @Test
+    @DisplayName("검색 결과 NDJSON 내보내기")
+    void test1() throws Exception {
+        String body = mockMvc.perform(get("/members/postCount/export").param("name", "member").param("count", "1"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString();
+
+        assertThat(body).endsWith("\n");
+        List<JsonNode> lines = new ArrayList<>();
+        for (String line : body.split("\n")) {
+            lines.add(objectMapper.readTree(line));
+        }
+
+        List<MemberPostDto> expected = memberJpaRepository.searchByWhere(new MemberSearchCondition("member", 1));
+        assertThat(lines).hasSize(2).hasSameSizeAs(expected);
+        assertThat(lines).extracting(line -> line.get("name").asText())
+                .containsExactlyInAnyOrder("memberA", "memberB");
+        assertThat(lines).extracting(line -> line.get("postCount").asInt())
+                .containsExactlyInAnyOrder(2, 1);
+    }
+
+    /**
+     * 결과가 없으면 빈 응답을 보낸다.
+     */
+    @Test
+    @DisplayName("결과가 없는 NDJSON 내보내기")
+    void test2() throws Exception {
+        mockMvc.perform(get("/members/postCount/export").param("name", "nobody"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("application/x-ndjson"))
+                .andExpect(content().string(""));
+    }
+}
@@ -0,0 +1,166 @@
+package study.querydsl.test;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import study.querydsl.dto.MemberPostDto;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.service.BulkOperationService;
+import study.querydsl.service.BulkProgressListener;
+import study.querydsl.service.PostWriteService;
+import study.querydsl.service.leaderboard.MemberLeaderboard;
+import study.querydsl.service.leaderboard.MemberLeaderboardLoader;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.*;
+import static study.querydsl.entity.QMember.member;
+
+/**게시물 수 순위를 엔티티 리스너와 적재기로 유지
+ * 리스너는 커밋 후에 반영하므로 테스트 트랜잭션(@Transactional) 없이 실행하고 직접 정리한다.
+ * 다른 테스트가 남긴 회원과 섞이지 않도록 이 테스트의 회원은 나이 77로 만들고 나이 범위로 조회한다.
+ * */
+@SpringBootTest
+public class MemberLeaderboardTest {
+
+    static final int AGE = 77;
+
+    @Autowired
+    MemberLeaderboard memberLeaderboard;
+    @Autowired
+    MemberLeaderboardLoader memberLeaderboardLoader;
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    PostWriteService postWriteService;
+    @Autowired
+    BulkOperationService bulkOperationService;
+    @PersistenceContext
+    EntityManager em;
+
+    Long memberA;
+    Long memberB;
+
+    @BeforeEach
+    public void before() {
+        memberA = memberRepository.save(new Member("leaderA", AGE)).getId();
+        memberB = memberRepository.save(new Member("leaderB", AGE)).getId();
+        postWriteService.write(memberA, "PostA1");
+        postWriteService.write(memberB, "PostB1");
+        postWriteService.write(memberB, "PostB2");
+    }
+
+    @AfterEach
+    public void after() {
+        bulkOperationService.deleteMembers(member.age.eq(AGE), 1000, BulkProgressListener.NONE);
+    }
+
+    /**
+     * 회원 저장, 게시물 작성, 회원 삭제가 커밋될 때마다 다시 집계하지 않고 순위에 반영된다.
+     */
+    @Test
+    @DisplayName("순위 증분 갱신")
+    void test1() {
+        Long memberC = memberRepository.save(new Member("leaderC", AGE)).getId();
+        assertThat(top()).extracting("name", "postCount")
+                .containsExactly(tuple("leaderB", 2), tuple("leaderA", 1), tuple("leaderC", 0));
+
+        postWriteService.write(memberA, "PostA2");
+        postWriteService.write(memberA, "PostA3");
+        assertThat(top()).extracting("name", "postCount")
+                .containsExactly(tuple("leaderA", 3), tuple("leaderB", 2), tuple("leaderC", 0));
+
+        memberRepository.deleteById(memberC);
+        assertThat(top()).extracting("name").containsExactly("leaderA", "leaderB");
+    }
+
+    /**
+     * 다시 집계하는 동안 커밋된 게시물 작성은 교체된 순위에도 남아야 한다.
+     */
+    @Test
+    @DisplayName("다시 집계하는 동안의 변경")
+    void test2() {
+        memberLeaderboard.reload(() -> {
+            //집계가 끝난 뒤 교체 전에 게시물이 커밋된 상황
+            List<MemberLeaderboard.Entry> aggregated = new JPAQueryFactory(em)
+                    .select(member.id, member.name, member.age, member.postCount, member.version)
+                    .from(member)
+                    .fetch().stream()
+                    .map(row -> new MemberLeaderboard.Entry(row.get(member.id), row.get(member.name), row.get(member.age),
+                            row.get(member.postCount), row.get(member.version)))
+                    .collect(Collectors.toList());
+            postWriteService.write(memberA, "PostA2");
+            postWriteService.write(memberA, "PostA3");
+            return aggregated;
+        });
+        assertThat(top()).extracting("name", "postCount")
+                .containsExactly(tuple("leaderA", 3), tuple("leaderB", 2));
+
+        //변경이 없으면 집계 결과와 같다.
+        memberLeaderboardLoader.reconcile();
+        assertThat(top()).extracting("name", "postCount")
+                .containsExactly(tuple("leaderA", 3), tuple("leaderB", 2));
+    }
+
+    /**
+     * 순위는 게시물 수 내림차순, 같으면 memberId 오름차순이고 갱신시 기존 항목을 대체한다.
+     */
+    @Test
+    @DisplayName("게시물 수 순위")
+    void test3() {
+        MemberLeaderboard leaderboard = new MemberLeaderboard();
+        leaderboard.replaceAll(List.of(
+                new MemberLeaderboard.Entry(1L, "memberA", 26, 2, 0),
+                new MemberLeaderboard.Entry(2L, "memberB", 23, 2, 0),
+                new MemberLeaderboard.Entry(3L, "memberC", 38, 1, 0),
+                new MemberLeaderboard.Entry(4L, "memberD", 40, 0, 0)));
+        assertThat(leaderboard.isReady()).isTrue();
+        assertThat(leaderboard.top(3, null, null)).extracting("name").containsExactly("memberA", "memberB", "memberC");
+        assertThat(leaderboard.top(2, 30, null)).extracting("name").containsExactly("memberC", "memberD");
+
+        leaderboard.update(4L, "memberD", 40, 5, 1);
+        leaderboard.remove(1L);
+        assertThat(leaderboard.top(2, null, null)).extracting("name", "postCount")
+                .containsExactly(tuple("memberD", 5), tuple("memberB", 2));
+        assertThat(leaderboard.size()).isEqualTo(3);
+    }
+
+    /**
+     * 커밋 후 콜백이 순서가 바뀌어 도착해도 오래된 version의 게시물 수가 새 값을 덮어쓰지 않고
+     * 삭제된 회원은 늦게 도착한 갱신으로 다시 나타나지 않는다.
+     */
+    @Test
+    @DisplayName("순서가 바뀐 갱신")
+    void test4() {
+        MemberLeaderboard leaderboard = new MemberLeaderboard();
+        assertThat(leaderboard.isReady()).isFalse();
+
+        leaderboard.update(1L, "memberA", 26, 3, 3);
+        leaderboard.update(1L, "memberA", 26, 2, 2);
+        assertThat(leaderboard.top(1, null, null)).extracting("postCount").containsExactly(3);
+
+        leaderboard.update(2L, "memberB", 23, 1, 1);
+        leaderboard.remove(2L);
+        leaderboard.update(2L, "memberB", 23, 2, 2);
+        assertThat(leaderboard.top(10, null, null)).extracting("name").containsExactly("memberA");
+
+        //다시 집계하는 동안 들어온 오래된 갱신도 집계 결과를 덮어쓰지 않는다.
+        leaderboard.reload(() -> {
+            leaderboard.update(1L, "memberA", 26, 1, 1);
+            return List.of(new MemberLeaderboard.Entry(1L, "memberA", 26, 4, 4));
+        });
+        assertThat(leaderboard.top(1, null, null)).extracting("postCount").containsExactly(4);
+    }
+
+    private List<MemberPostDto> top() {
+        return memberLeaderboard.top(10, AGE, AGE);
+    }
+}
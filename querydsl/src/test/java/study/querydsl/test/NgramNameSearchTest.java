@@ -0,0 +1,130 @@
+package study.querydsl.test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.name.NgramMemberNameSearch;
+import study.querydsl.service.BulkOperationService;
+import study.querydsl.service.BulkProgressListener;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+import static study.querydsl.entity.QMember.member;
+
+/**ngram 이름 검색(querydsl.name-search=ngram)
+ * 색인은 커밋 후에 반영되므로 회원 저장마다 커밋하도록 테스트 트랜잭션(@Transactional) 없이 실행하고 직접 정리한다.
+ * */
+@SpringBootTest(properties = "querydsl.name-search=ngram")
+public class NgramNameSearchTest {
+
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    BulkOperationService bulkOperationService;
+    @Autowired
+    NgramMemberNameSearch nameSearch;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    Long alphaId;
+
+    @BeforeEach
+    public void before() {
+        alphaId = memberRepository.save(new Member("ngramAlpha", 26)).getId();
+        memberRepository.save(new Member("ngramGamma", 30));
+    }
+
+    /**bulk 삭제 이벤트로 색인에서도 지운다.*/
+    @AfterEach
+    public void after() {
+        bulkOperationService.deleteMembers(member.id.isNotNull(), 1000, BulkProgressListener.NONE);
+    }
+
+    /**
+     * 커밋된 회원은 색인으로 찾는다.
+     */
+    @Test
+    @DisplayName("커밋된 회원 검색")
+    void test1() {
+        assertThat(nameSearch.findIdsContaining("Alpha")).containsExactly(alphaId);
+        assertThat(memberRepository.searchByWhere(new MemberSearchCondition("Alpha", null)))
+                .extracting("name").containsExactly("ngramAlpha");
+        assertThat(memberRepository.searchByWhere(new MemberSearchCondition("ngram", null)))
+                .extracting("name").containsExactlyInAnyOrder("ngramAlpha", "ngramGamma");
+    }
+
+    /**
+     * 같은 트랜잭션에서 이름을 바꾸면 색인은 커밋 전까지 예전 이름을 가지고 있으므로 like로 검색해야 한다.
+     * 커밋 후에는 색인에 새 이름이 반영된다.
+     */
+    @Test
+    @DisplayName("커밋 전 이름 변경 검색")
+    void test2() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.executeWithoutResult(status -> {
+            Member alpha = memberRepository.findById(alphaId).get();
+            alpha.setName("ngramBeta");
+            memberRepository.save(new Member("ngramDelta", 40));
+
+            assertThat(nameSearch.findIdsContaining("Beta")).isEmpty();
+            assertThat(memberRepository.searchByWhere(new MemberSearchCondition("Beta", null)))
+                    .extracting("name").containsExactly("ngramBeta");
+            assertThat(memberRepository.searchByWhere(new MemberSearchCondition("Alpha", null))).isEmpty();
+            assertThat(memberRepository.searchByWhere(new MemberSearchCondition("Delta", null)))
+                    .extracting("name").containsExactly("ngramDelta");
+        });
+
+        assertThat(nameSearch.findIdsContaining("Beta")).containsExactly(alphaId);
+        assertThat(nameSearch.findIdsContaining("Alpha")).isEmpty();
+        assertThat(memberRepository.searchByWhere(new MemberSearchCondition("Beta", null)))
+                .extracting("name").containsExactly("ngramBeta");
+    }
+
+    /**
+     * 롤백된 이름 변경은 색인에 남지 않는다.
+     */
+    @Test
+    @DisplayName("롤백된 이름 변경")
+    void test3() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.executeWithoutResult(status -> {
+            memberRepository.findById(alphaId).get().setName("ngramBeta");
+            assertThat(memberRepository.searchByWhere(new MemberSearchCondition("Beta", null))).hasSize(1);
+            status.setRollbackOnly();
+        });
+
+        assertThat(nameSearch.findIdsContaining("Beta")).isEmpty();
+        assertThat(memberRepository.searchByWhere(new MemberSearchCondition("Alpha", null)))
+                .extracting("name").containsExactly("ngramAlpha");
+    }
+
+    /**
+     * 다시 읽는 동안 반영된 이름 변경과 삭제는 교체된 색인에도 남아야 한다.
+     */
+    @Test
+    @DisplayName("다시 읽는 동안의 변경")
+    void test4() {
+        NgramMemberNameSearch search = new NgramMemberNameSearch(1000);
+        search.reload(() -> {
+            //DB를 읽은 뒤 교체 전에 이름 변경과 삭제가 커밋된 상황
+            Map<Long, String> loaded = Map.of(1L, "ngramAlpha", 2L, "ngramGamma");
+            search.index(1L, "ngramBeta");
+            search.remove(2L);
+            return loaded;
+        });
+
+        assertThat(search.findIdsContaining("Beta")).containsExactly(1L);
+        assertThat(search.findIdsContaining("Alpha")).isEmpty();
+        assertThat(search.findIdsContaining("Gamma")).isEmpty();
+        assertThat(search.size()).isEqualTo(1);
+    }
+}
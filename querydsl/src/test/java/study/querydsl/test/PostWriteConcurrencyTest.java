@@ -0,0 +1,99 @@
+package study.querydsl.test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.PostRepository;
+import study.querydsl.service.PostWriteService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**같은 회원에게 동시에 게시물 작성
+ * 스레드 8개가 같은 회원에게 쓰지만 게시물 수는 update로 증감하므로 충돌 없이 모두 성공해야 한다.
+ * 스레드마다 커밋해야 하므로 테스트 트랜잭션(@Transactional) 없이 실행하고 직접 정리한다.
+ * */
+@SpringBootTest
+public class PostWriteConcurrencyTest {
+
+    static final int THREADS = 8;
+    static final int POSTS_PER_THREAD = 5;
+
+    @Autowired
+    PostWriteService postWriteService;
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    PostRepository postRepository;
+
+    Long memberId;
+
+    @BeforeEach
+    public void before() {
+        memberId = memberRepository.save(new Member("hotMember", 30)).getId();
+    }
+
+    @AfterEach
+    public void after() {
+        postRepository.deleteAllInBatch();
+        memberRepository.deleteAllInBatch();
+    }
+
+    @Test
+    @DisplayName("동시 작성은 충돌 없이 게시물 수가 맞아야 한다")
+    void test1() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            int thread = i;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int j = 0; j < POSTS_PER_THREAD; j++) {
+                    postWriteService.write(memberId, "post" + thread + "-" + j);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        Member member = memberRepository.findById(memberId).get();
+        assertThat(member.getPostCount()).isEqualTo(THREADS * POSTS_PER_THREAD);
+        assertThat(member.getVersion()).isEqualTo((long) THREADS * POSTS_PER_THREAD);
+        assertThat(postRepository.count()).isEqualTo(THREADS * POSTS_PER_THREAD);
+    }
+
+    /**
+     * 작성자를 바꾸면 두 회원의 게시물 수가 update로 옮겨진다.
+     */
+    @Test
+    @DisplayName("작성자 변경")
+    void test2() {
+        Long otherId = memberRepository.save(new Member("coldMember", 20)).getId();
+        Long postId = postWriteService.write(memberId, "post");
+
+        postWriteService.changeMember(postId, otherId);
+        postWriteService.changeMember(postId, otherId);
+
+        assertThat(memberRepository.findById(memberId).get().getPostCount()).isZero();
+        assertThat(memberRepository.findById(otherId).get().getPostCount()).isEqualTo(1);
+        assertThat(postRepository.findPostsOfMember(otherId, null, 10).getContent())
+                .extracting("postId").containsExactly(postId);
+    }
+}
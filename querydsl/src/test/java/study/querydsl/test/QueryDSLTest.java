@@ -19,8 +19,11 @@ import study.querydsl.dto.MemberDto;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.Post;
 import study.querydsl.entity.QMember;
+import study.querydsl.repository.MemberCountCache;
 import study.querydsl.repository.MemberRepository;
 import study.querydsl.repository.PostRepository;
+import study.querydsl.support.ExpectedQueries;
+import study.querydsl.support.QueryCount;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
@@ -40,6 +43,8 @@ public class QueryDSLTest {
     MemberRepository memberRepository;
     @Autowired
     PostRepository postRepository;
+    @Autowired
+    MemberCountCache memberCountCache;
     @PersistenceContext
     EntityManager em;
 
@@ -228,10 +233,28 @@ public class QueryDSLTest {
      * */
     @Test
     @DisplayName("Fetch join")
+    @ExpectedQueries(max = 1)
     void test9() {
         em.flush();
         em.clear();
         List<Post> fetchJoin = queryFactory.selectFrom(post).join(post.member, member).fetchJoin().fetch();
+        fetchJoin.forEach(p -> p.getMember().getName());
+    }
+
+    /**
+     * fetch join 없이 post를 조회하고 member에 접근하면 작성자 수만큼 지연 로딩 쿼리가 추가로 나간다(N+1).
+     * */
+    @Test
+    @DisplayName("지연 로딩 N+1")
+    void test9_1() {
+        em.flush();
+        em.clear();
+        int selects = QueryCount.selects(() -> {
+            List<Post> posts = queryFactory.selectFrom(post).fetch();
+            posts.forEach(p -> p.getMember().getName());
+        });
+        //post 조회 1번 + 작성자 memberA, memberB, memberC 지연 로딩 3번
+        assertThat(selects).isEqualTo(4);
     }
 
     /***
@@ -368,6 +391,8 @@ public class QueryDSLTest {
 
         em.flush();
         em.clear();
+        //bulk 연산은 엔티티 리스너를 거치지 않으므로 Count 캐시도 직접 무효화한다.
+        memberCountCache.invalidateAll();
 
         List<Member> members = queryFactory.selectFrom(member).where(member.name.eq("memberA")).fetch();
         for (Member member1 : members) {
@@ -0,0 +1,129 @@
+package study.querydsl.test;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.repository.MemberReadRepository;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.PostCountStrategy;
+import study.querydsl.repository.PostRepository;
+import study.querydsl.service.BulkLoadService;
+import study.querydsl.support.QueryPlan;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+import static study.querydsl.entity.QMember.member;
+
+/**리포지토리 검색 SQL의 실행 계획 회귀 테스트
+ * 회원 2000명 x 게시물 5개를 적재한 뒤 MemberRepositoryCustom 메서드가 만든 SQL을 EXPLAIN 한다.
+ * 이름 포함 검색(like '%이름%')은 인덱스를 사용할 수 없으므로 MEMBER 전체 스캔은 허용하고
+ * 게시물 수 서브쿼리, join 에서 POST 전체 스캔이 나오면 실패한다.
+ * 회원 인덱스(이름, 나이, 게시물 수)는 해당 컬럼 조건이 인덱스를 사용하는지 확인한다.
+ * */
+@SpringBootTest
+@Transactional
+public class QueryPlanTest {
+
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    PostRepository postRepository;
+    @Autowired
+    MemberReadRepository memberReadRepository;
+    @Autowired
+    BulkLoadService bulkLoadService;
+    @PersistenceContext
+    EntityManager em;
+
+    @BeforeEach
+    public void before() {
+        bulkLoadService.seed(2000, 5, 1000);
+    }
+
+    @Test
+    @DisplayName("게시물 수 조회 전략별 POST 전체 스캔 없음")
+    void test1() {
+        MemberSearchCondition cond = new MemberSearchCondition("member1", 3);
+        for (PostCountStrategy strategy : PostCountStrategy.values()) {
+            assertNoPostTableScan(QueryPlan.explain(em, () -> memberRepository.searchByWhere(cond, strategy)));
+        }
+        assertNoPostTableScan(QueryPlan.explain(em, () -> memberRepository.searchByTemplate(cond)));
+    }
+
+    @Test
+    @DisplayName("페이징 내용, Count 쿼리 POST 전체 스캔 없음")
+    void test2() {
+        MemberSearchCondition cond = new MemberSearchCondition(null, 3);
+        PageRequest pageRequest = PageRequest.of(3, 20);
+        assertNoPostTableScan(QueryPlan.explain(em, () -> memberRepository.searchPageSimple(cond, pageRequest)));
+        assertNoPostTableScan(QueryPlan.explain(em, () -> memberRepository.searchPageComplex(cond, pageRequest)));
+    }
+
+    @Test
+    @DisplayName("커서 페이징은 PK 인덱스 범위 조회")
+    void test3() {
+        Long lastMemberId = memberRepository.searchSliceByCursor(new MemberSearchCondition(null, null), null, 1000)
+                .getContent().get(999).getMemberId();
+
+        Map<String, String> plans = QueryPlan.explain(em, () ->
+                memberRepository.searchSliceByCursor(new MemberSearchCondition(null, null), lastMemberId, 20));
+
+        assertThat(plans).isNotEmpty();
+        assertNoPostTableScan(plans);
+        plans.forEach((sql, plan) -> assertThat(QueryPlan.usesPrimaryKey(plan)).as(plan).isTrue());
+    }
+
+    @Test
+    @DisplayName("작성자 게시물 커서 페이징은 (MEMBER_ID, POST_ID) 인덱스 범위 조회")
+    void test4() {
+        Long memberId = memberRepository.searchSliceByCursor(new MemberSearchCondition(null, 5), null, 1)
+                .getContent().get(0).getMemberId();
+        Long lastPostId = postRepository.findPostsOfMember(memberId, null, 2).getContent().get(1).getPostId();
+
+        Map<String, String> plans = QueryPlan.explain(em, () -> postRepository.findPostsOfMember(memberId, lastPostId, 2));
+
+        assertNoPostTableScan(plans);
+        plans.forEach((sql, plan) -> assertThat(QueryPlan.usesIndex(plan, "idx_post_member_post")).as(plan).isTrue());
+    }
+
+    @Test
+    @DisplayName("게시물 수 컬럼 조건은 idx_member_post_count 사용")
+    void test5() {
+        MemberSearchCondition cond = new MemberSearchCondition(null, 3);
+        assertUsesIndex(QueryPlan.explain(em, () -> memberRepository.searchByWhere(cond, PostCountStrategy.COLUMN)),
+                "idx_member_post_count");
+        assertUsesIndex(QueryPlan.explain(em, () -> memberReadRepository.findMemberPosts(cond)), "idx_member_post_count");
+    }
+
+    /**
+     * 이름 포함 검색(like '%이름%')은 인덱스를 사용할 수 없으므로 이름, 나이 인덱스는 같음, 범위 조건으로 확인한다.
+     */
+    @Test
+    @DisplayName("이름, 나이 조건은 idx_member_name, idx_member_age 사용")
+    void test6() {
+        JPAQueryFactory queryFactory = new JPAQueryFactory(em);
+        assertUsesIndex(QueryPlan.explain(em, () -> queryFactory.select(member.id).from(member)
+                .where(member.name.eq("member1")).fetch()), "idx_member_name");
+        assertUsesIndex(QueryPlan.explain(em, () -> queryFactory.select(member.id).from(member)
+                .where(member.age.between(20, 21)).fetch()), "idx_member_age");
+    }
+
+    private void assertUsesIndex(Map<String, String> plans, String index) {
+        assertThat(plans).isNotEmpty();
+        plans.forEach((sql, plan) -> assertThat(QueryPlan.usesIndex(plan, index)).as(plan).isTrue());
+    }
+
+    private void assertNoPostTableScan(Map<String, String> plans) {
+        assertThat(plans).isNotEmpty();
+        plans.forEach((sql, plan) -> assertThat(QueryPlan.isTableScan(plan, "POST")).as(plan).isFalse());
+    }
+}
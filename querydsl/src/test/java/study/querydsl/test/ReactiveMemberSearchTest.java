@@ -0,0 +1,83 @@
+package study.querydsl.test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+import reactor.test.StepVerifier;
+import study.querydsl.dto.MemberPostDto;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.service.ReactiveMemberSearchService;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**Flux 검색 backpressure
+ * 회원 20명을 slice 2개씩 10 페이지로 돌려주는 리포지토리로 구독자가 요청한 만큼만 slice를 조회하는지 확인한다.
+ * 조회는 검색 스케줄러 스레드에서 일어나므로 select 문 대신 searchSliceByCursor 호출 수를 센다.
+ * */
+public class ReactiveMemberSearchTest {
+
+    static final int MEMBERS = 20;
+    static final int SLICE_SIZE = 2;
+
+    MemberRepository memberRepository;
+    ReactiveMemberSearchService service;
+
+    MemberSearchCondition cond = new MemberSearchCondition(null, null);
+
+    @BeforeEach
+    public void before() {
+        memberRepository = mock(MemberRepository.class);
+        when(memberRepository.searchSliceByCursor(any(), any(), eq(SLICE_SIZE))).thenAnswer(invocation -> {
+            Long lastMemberId = invocation.getArgument(1);
+            long from = lastMemberId == null ? 1 : lastMemberId + 1;
+            List<MemberPostDto> content = LongStream.range(from, Math.min(from + SLICE_SIZE, MEMBERS + 1))
+                    .mapToObj(id -> new MemberPostDto(id, "member" + id, 20, 0))
+                    .collect(Collectors.toList());
+            return new SliceImpl<>(content, PageRequest.of(0, SLICE_SIZE), from + SLICE_SIZE <= MEMBERS);
+        });
+        service = new ReactiveMemberSearchService(memberRepository, 2, 10, Duration.ofSeconds(5), SLICE_SIZE);
+    }
+
+    @AfterEach
+    public void after() {
+        service.dispose();
+    }
+
+    /**
+     * 첫 slice만큼 요청하면 첫 slice와 미리 요청한 다음 slice 하나까지만 조회한다.
+     */
+    @Test
+    @DisplayName("요청한 만큼만 slice 조회")
+    void test1() {
+        StepVerifier.create(service.search(cond), SLICE_SIZE)
+                .expectNextCount(SLICE_SIZE)
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+
+        verify(memberRepository, after(200).atMost(2)).searchSliceByCursor(any(), any(), eq(SLICE_SIZE));
+    }
+
+    /**
+     * 끝까지 요청하면 모든 slice를 한 번씩 조회하고 끝난다.
+     */
+    @Test
+    @DisplayName("모든 slice 조회")
+    void test2() {
+        StepVerifier.create(service.search(cond))
+                .expectNextCount(MEMBERS)
+                .verifyComplete();
+
+        verify(memberRepository, times(MEMBERS / SLICE_SIZE)).searchSliceByCursor(any(), any(), eq(SLICE_SIZE));
+    }
+}
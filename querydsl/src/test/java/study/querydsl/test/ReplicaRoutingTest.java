@@ -0,0 +1,70 @@
+package study.querydsl.test;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.datasource.ReplicaLagMonitor;
+
+import javax.persistence.EntityManager;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**primary, replica 라우팅
+ * 메모리 h2 두 개를 primary, replica로 사용하고 h2의 database() 함수로 어느 DB에서 실행됐는지 확인한다.
+ * */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:primary;DB_CLOSE_DELAY=-1",
+        "querydsl.datasource.replica.enabled=true",
+        "querydsl.datasource.replica.url=jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1",
+        "querydsl.datasource.replica.username=sa",
+        "querydsl.datasource.replica.password=",
+        "querydsl.datasource.replica.max-lag=5s"
+})
+public class ReplicaRoutingTest {
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+    @Autowired
+    EntityManager em;
+    @Autowired
+    ReplicaLagMonitor lagMonitor;
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @AfterEach
+    public void after() {
+        lagMonitor.record(Duration.ZERO);
+    }
+
+    @Test
+    @DisplayName("읽기 전용 트랜잭션은 replica, 나머지는 primary")
+    void test1() {
+        assertThat(database(true)).isEqualTo("REPLICA");
+        assertThat(database(false)).isEqualTo("PRIMARY");
+        assertThat(meterRegistry.get("querydsl.datasource.route").tag("target", "replica").counter().count())
+                .isGreaterThanOrEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("replica 지연이 maxLag를 넘으면 읽기 전용 트랜잭션도 primary")
+    void test2() {
+        lagMonitor.record(Duration.ofSeconds(10));
+        assertThat(database(true)).isEqualTo("PRIMARY");
+
+        lagMonitor.record(Duration.ofSeconds(1));
+        assertThat(database(true)).isEqualTo("REPLICA");
+    }
+
+    private String database(boolean readOnly) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(readOnly);
+        return transactionTemplate.execute(status ->
+                (String) em.createNativeQuery("select database()").getSingleResult());
+    }
+}
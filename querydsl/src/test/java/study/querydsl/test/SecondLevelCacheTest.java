@@ -0,0 +1,107 @@
+package study.querydsl.test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import study.querydsl.dto.MemberPostDto;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.service.BulkOperationService;
+import study.querydsl.service.BulkProgressListener;
+import study.querydsl.service.PostWriteService;
+import study.querydsl.support.QueryCount;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static study.querydsl.entity.QMember.member;
+
+/**쿼리 결과 캐시(searchByWhereCached)
+ * 테스트 설정(application.yml)은 2차 캐시를 켜지 않으므로 main 설정과 같이 2차 캐시와 쿼리 캐시를 켠다.
+ * 캐시된 결과는 커밋된 변경으로 무효화되므로 테스트 트랜잭션(@Transactional) 없이 실행하고 직접 정리한다.
+ * */
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=true",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=true",
+        "spring.jpa.properties.hibernate.cache.region.factory_class=jcache",
+        "spring.jpa.properties.hibernate.javax.cache.provider=com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider",
+        "spring.jpa.properties.hibernate.javax.cache.missing_cache_strategy=create"
+})
+public class SecondLevelCacheTest {
+
+    static final MemberSearchCondition CONDITION = new MemberSearchCondition("cacheMember", null);
+
+    @Autowired
+    MemberRepository memberRepository;
+    @Autowired
+    PostWriteService postWriteService;
+    @Autowired
+    BulkOperationService bulkOperationService;
+
+    Long memberA;
+
+    @BeforeEach
+    public void before() {
+        memberA = memberRepository.save(new Member("cacheMemberA", 20)).getId();
+        memberRepository.save(new Member("cacheMemberB", 30));
+    }
+
+    @AfterEach
+    public void after() {
+        bulkOperationService.deleteMembers(member.name.startsWith("cacheMember"), 1000, BulkProgressListener.NONE);
+    }
+
+    /**
+     * 같은 조건의 두 번째 조회는 쿼리 캐시에서 가져오므로 select 문이 나가지 않는다.
+     */
+    @Test
+    @DisplayName("같은 조건 두 번째 조회")
+    void test1() {
+        assertThat(selects()).isEqualTo(1);
+        assertThat(selects()).isEqualTo(0);
+        assertThat(search()).extracting("name").containsExactlyInAnyOrder("cacheMemberA", "cacheMemberB");
+    }
+
+    /**
+     * 회원 저장, 게시물 작성이 커밋되면 캐시된 결과를 버리고 다시 조회한다.
+     */
+    @Test
+    @DisplayName("엔티티 변경으로 무효화")
+    void test2() {
+        search();
+        memberRepository.save(new Member("cacheMemberC", 40));
+        assertThat(selects()).isEqualTo(1);
+        assertThat(search()).extracting("name")
+                .containsExactlyInAnyOrder("cacheMemberA", "cacheMemberB", "cacheMemberC");
+
+        postWriteService.write(memberA, "cachePost");
+        assertThat(selects()).isEqualTo(1);
+        assertThat(search()).filteredOn("name", "cacheMemberA")
+                .extracting("postCount").containsExactly(1);
+    }
+
+    /**
+     * bulk 연산은 영속성 컨텍스트를 거치지 않아도 하이버네이트가 대상 테이블의 캐시된 결과를 무효화한다.
+     */
+    @Test
+    @DisplayName("bulk 연산으로 무효화")
+    void test3() {
+        search();
+        bulkOperationService.updateMembers(member.name.startsWith("cacheMember"),
+                update -> update.set(member.age, member.age.add(1)), 1000, BulkProgressListener.NONE);
+        assertThat(selects()).isEqualTo(1);
+        assertThat(search()).extracting("age").containsExactlyInAnyOrder(21, 31);
+    }
+
+    private int selects() {
+        return QueryCount.selects(this::search);
+    }
+
+    private List<MemberPostDto> search() {
+        return memberRepository.searchByWhereCached(CONDITION);
+    }
+}